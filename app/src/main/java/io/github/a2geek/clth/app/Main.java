@@ -18,26 +18,43 @@
 package io.github.a2geek.clth.app;
 
 import io.github.a2geek.clth.Config;
+import io.github.a2geek.clth.DurationStats;
+import io.github.a2geek.clth.Events;
+import io.github.a2geek.clth.JUnitXmlResultWriter;
+import io.github.a2geek.clth.JsonLinesResultWriter;
+import io.github.a2geek.clth.ProcessProfile;
+import io.github.a2geek.clth.ResultWriter;
+import io.github.a2geek.clth.Scheduler;
+import io.github.a2geek.clth.Shard;
+import io.github.a2geek.clth.StopProcessException;
+import io.github.a2geek.clth.SuiteResult;
 import io.github.a2geek.clth.TestHarness;
+import io.github.a2geek.clth.TestPlan;
 import io.github.a2geek.clth.TestSuite;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
 import picocli.CommandLine;
 import picocli.CommandLine.*;
 
 import java.io.*;
 import java.nio.file.*;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Callable;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @Command(name = "clth", mixinStandardHelpOptions = true, description = "Command Line Test Harness",
         versionProvider = Main.VersionProvider.class)
-public class Main implements Callable<Integer> {
+public class Main implements Callable<Integer>, TestHarness.TestRunner {
     public static void main(String... args) {
         int exitCode = new CommandLine(new Main()).execute(args);
         System.exit(exitCode);
     }
 
-    @Parameters(arity = "1..*", description = "Test file definitions")
+    @Parameters(arity = "1..*", description = "Test file definitions or compiled test plans (or result files to combine with --merge)")
     private List<Path> testFiles;
 
     @Option(names = { "-a", "--all-output" }, description = "Always show output from tests.")
@@ -45,57 +62,245 @@ public class Main implements Callable<Integer> {
         settingsBuilder.enableAlwaysShowOutput();
     }
 
+    @Option(names = { "-j", "--jobs" }, paramLabel = "<n>", description = "Number of test suites to run concurrently (default: 1).")
+    private int jobs = 1;
+
+    @Option(names = "--stats", paramLabel = "<file>", description = "Record suite durations in this file and use them to run the slowest suites first. With --shard, the file is only read.")
+    private Path statsFile;
+
+    @Option(names = "--stats-out", paramLabel = "<file>", description = "Write suite durations to this file instead of --stats. A shard writes only the suites it ran.")
+    private Path statsOutFile;
+
+    @Option(names = "--shard", paramLabel = "<i/N>", description = "Only run shard i of N. Suites are partitioned by name and variables, or by duration when --stats is available.")
+    private String shard;
+
+    @Option(names = "--merge", paramLabel = "<file>", description = "Combine the per-shard result files given as parameters into this file instead of running tests.")
+    private Path mergeFile;
+
+    @Option(names = "--compile", paramLabel = "<file>", description = "Expand the test files into this binary test plan instead of running them. A plan is given to clth in place of its test files.")
+    private Path compileFile;
+
+    @Option(names = "--junit", paramLabel = "<file>", description = "Write JUnit XML results to this file as each suite finishes.")
+    private Path junitFile;
+
+    @Option(names = "--json", paramLabel = "<file>", description = "Write JSON lines results to this file as each suite finishes.")
+    private Path jsonFile;
+
+    @Option(names = "--launch-mechanism", paramLabel = "<name>", description = "How the JDK starts processes: ${COMPLETION-CANDIDATES} (default: POSIX_SPAWN on Linux).")
+    private LaunchMechanism launchMechanism;
+
+    @Option(names = "--profile", paramLabel = "<interval>", description = "Sample each executed process through /proc at this interval (such as 10ms) and report peak RSS, CPU time, context switches and I/O.")
+    public void profile(String interval) {
+        settingsBuilder.profileInterval(Config.parseDuration(interval));
+    }
+
+    @Option(names = "--jfr", paramLabel = "<file>", description = "Record a Flight Recording with the harness events (config load, suite expansion, step execution, output matching, diffs) to this file.")
+    private Path jfrFile;
+
+    @Option(names = "--watch", description = "Keep running and re-run the suites affected whenever a test file, 'file:' reference or executable changes.")
+    private boolean watch;
+
     @ArgGroup(heading = "%nFile Management:%n")
     private final FileManagement fileManagement = new FileManagement();
 
     private final TestHarness.Settings.Builder settingsBuilder = TestHarness.settings();
+    private final Map<Launch,List<String>> launches = new ConcurrentHashMap<>();
+    private boolean cacheLaunches = true;
+
+    public enum LaunchMechanism { POSIX_SPAWN, FORK, VFORK }
 
     @Override
     public Integer call() throws Exception {
+        if (jfrFile == null) {
+            return runTests();
+        }
+        // The default JDK events come along so harness time can be compared with GC, I/O and CPU samples
+        try (Recording recording = new Recording(Configuration.getConfiguration("default"))) {
+            Events.ALL.forEach(recording::enable);
+            recording.start();
+            try {
+                return runTests();
+            } finally {
+                recording.stop();
+                recording.dump(jfrFile);
+            }
+        }
+    }
+
+    public int runTests() throws Exception {
+        if (watch && (compileFile != null || mergeFile != null || shard != null || statsFile != null
+                || statsOutFile != null || junitFile != null || jsonFile != null)) {
+            throw new IllegalArgumentException("--watch cannot be combined with --compile, --merge, --shard, "
+                    + "--stats, --stats-out, --junit or --json");
+        }
+        if (mergeFile != null) {
+            merge();
+            return 0;
+        }
+        if (launchMechanism != null) {
+            // Read by the JDK when the first process is started
+            System.setProperty("jdk.lang.Process.launchMechanism", launchMechanism.name());
+        }
+        if (watch) {
+            return new Watcher(this, testFiles, settingsBuilder.get().baseDirectory()).run();
+        }
+        DurationStats stats = statsFile == null ? new DurationStats() : DurationStats.load(statsFile);
+        List<TestSuite> testSuites = new ArrayList<>();
+        List<Config> configs = new ArrayList<>();
         for (Path testFile : testFiles) {
-            Config config = Config.load(Files.readString(testFile));
-            TestSuite.build(config).forEach(testSuite -> TestHarness.run(testSuite, this::execute, settingsBuilder.get()));
+            if (TestPlan.isPlan(testFile)) {
+                testSuites.addAll(TestPlan.read(testFile));
+            } else {
+                Config config = Config.load(Files.readString(testFile));
+                configs.add(config);
+                TestSuite.build(config).forEach(testSuites::add);
+            }
+        }
+        if (compileFile != null) {
+            if (configs.size() != testFiles.size()) {
+                throw new IllegalArgumentException("--compile needs test files rather than test plans");
+            }
+            TestPlan.write(configs, compileFile);
+            System.out.printf("Compiled %d suites from %d files into %s%n", testSuites.size(), configs.size(),
+                    compileFile);
+            return 0;
+        }
+        if (shard != null) {
+            testSuites = Shard.parse(shard).select(testSuites, stats);
+        }
+        if (jobs > 1) {
+            testSuites = Scheduler.longestFirst(testSuites, stats);
+        }
+        // Every shard must partition with the same stats, so a shard never rewrites its input. It only
+        // writes what it ran (to --stats-out), and the shard files are combined with --merge.
+        DurationStats recorded = shard == null ? stats : new DurationStats();
+        Path recordedFile = statsOutFile != null ? statsOutFile : shard == null ? statsFile : null;
+        List<ResultWriter> writers = new ArrayList<>();
+        try {
+            if (junitFile != null) {
+                writers.add(new JUnitXmlResultWriter(junitFile));
+            }
+            if (jsonFile != null) {
+                writers.add(new JsonLinesResultWriter(jsonFile));
+            }
+            return runAll(testSuites, recorded, writers);
+        } finally {
+            for (ResultWriter writer : writers) {
+                writer.close();
+            }
+            if (recordedFile != null) {
+                recorded.save(recordedFile);
+            }
+        }
+    }
+
+    public void merge() throws IOException {
+        String name = mergeFile.getFileName().toString();
+        if (name.endsWith(".xml")) {
+            JUnitXmlResultWriter.merge(testFiles, mergeFile);
+        } else if (name.endsWith(".json") || name.endsWith(".jsonl")) {
+            JsonLinesResultWriter.merge(testFiles, mergeFile);
+        } else {
+            DurationStats merged = new DurationStats();
+            for (Path file : testFiles) {
+                merged.merge(DurationStats.load(file));
+            }
+            merged.save(mergeFile);
+        }
+    }
+
+    public int runAll(List<TestSuite> testSuites, DurationStats stats, List<ResultWriter> writers) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, jobs));
+        List<Future<SuiteResult>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (TestSuite testSuite : testSuites) {
+            // With multiple workers, each suite's output is buffered so it prints as one block
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            PrintStream out = jobs > 1 ? new PrintStream(buffer, true) : System.out;
+            TestHarness.Settings settings = settingsBuilder.out(out).get();
+            futures.add(executor.submit(() -> {
+                SuiteResult result;
+                try {
+                    result = TestHarness.execute(testSuite, this, settings);
+                } finally {
+                    if (out != System.out) {
+                        synchronized (System.out) {
+                            System.out.print(buffer);
+                        }
+                    }
+                }
+                for (ResultWriter writer : writers) {
+                    writer.write(result);
+                }
+                if (result.passed()) {
+                    stats.record(testSuite, result.duration());
+                }
+                return result;
+            }));
+        }
+        executor.shutdown();
+
+        List<SuiteResult> results = new ArrayList<>();
+        for (Future<SuiteResult> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException ex) {
+                // Only writing results can fail here; the suites themselves report failures
+                executor.shutdownNow();
+                throw ex.getCause() instanceof Exception cause ? cause : ex;
+            }
+        }
+        long wall = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+        if (jobs > 1) {
+            List<Long> durations = results.stream().map(r -> r.duration().toMillis()).toList();
+            System.out.println(Scheduler.report(durations, jobs, wall));
+        }
+        List<SuiteResult> failures = results.stream().filter(r -> !r.passed()).toList();
+        if (!failures.isEmpty()) {
+            System.out.printf("%d of %d tests failed:\n", failures.size(), results.size());
+            for (SuiteResult failure : failures) {
+                System.out.printf("\tTest '%s' %s: %s\n", failure.testSuite().testName(),
+                        failure.testSuite().variables(), failure.errors());
+            }
+            return 1;
         }
         return 0;
     }
 
+    @Override
     public int execute(Config.Command command, List<String> parameters, InputStream stdin, OutputStream stdout, OutputStream stderr) {
+        return execute(command, parameters, stdin, stdout, stderr, null);
+    }
+
+    @Override
+    public int execute(Config.Command command, List<String> parameters, InputStream stdin, OutputStream stdout,
+                       OutputStream stderr, ProcessProfile profile) {
         try {
-            int slash = command.executable().lastIndexOf('/');
-            Path parent = Path.of(".");
-            if (slash != -1) {
-                parent = Path.of(command.executable().substring(0, slash));
-            }
-            String glob = String.format("glob:%s", command.executable().substring(slash+1));
-            PathMatcher matcher = FileSystems.getDefault().getPathMatcher(glob);
-
-            Path exe;
-            try (Stream<Path> paths = Files.find(parent, 1,
-                    (file, attr) -> matcher.matches(file.getFileName()))) {
-                exe = paths.findFirst().orElseThrow(() -> {
-                    String msg = String.format("Unable to locate executable at '%s'", command.executable());
-                    return new RuntimeException(msg);
-                });
+            // Setup
+            Process process = processBuilder(command, parameters).start();
+            if (profile != null) {
+                profile.start(process.pid());
             }
 
-            parameters.addFirst(exe.toString());
-            ProcessBuilder builder = new ProcessBuilder(parameters);
+            // Capture stdout & stderr while the process runs so output can be checked as it arrives
+            List<Process> processes = List.of(process);
+            Thread stdoutPump = pump(processes, process.getInputStream(), stdout);
+            Thread stderrPump = pump(processes, process.getErrorStream(), stderr);
 
-            // Setup
-            Process process = builder.start();
-
-            // Handle stdin
-            try (OutputStream outputStream = process.getOutputStream()) {
-                stdin.transferTo(outputStream);
-            }
+            IOException stdinFailure = writeStdin(stdin, process);
 
             // Wait for execution to finish
             int returnCode = process.waitFor();
+            if (profile != null) {
+                profile.stop();
+            }
+            stdoutPump.join();
+            stderrPump.join();
 
-            // Capture stdout & stderr
-            process.getInputStream().transferTo(stdout);
-            process.getErrorStream().transferTo(stderr);
-
+            if (stdinFailure != null) {
+                throw stdinFailure;
+            }
             return returnCode;
         } catch (IOException ex) {
             throw new UncheckedIOException(ex);
@@ -104,6 +309,188 @@ public class Main implements Callable<Integer> {
         }
     }
 
+    @Override
+    public int[] executePipeline(List<Config.Command> commands, List<List<String>> parameters, InputStream stdin,
+                                 OutputStream stdout, List<OutputStream> stderr) {
+        try {
+            List<ProcessBuilder> builders = new ArrayList<>();
+            for (int i = 0; i < commands.size(); i++) {
+                builders.add(processBuilder(commands.get(i), parameters.get(i)));
+            }
+            // The OS connects each stage directly to the next; only the ends pass through the harness
+            List<Process> processes = ProcessBuilder.startPipeline(builders);
+
+            List<Thread> pumps = new ArrayList<>();
+            pumps.add(pump(processes, processes.getLast().getInputStream(), stdout));
+            for (int i = 0; i < processes.size(); i++) {
+                pumps.add(pump(processes, processes.get(i).getErrorStream(), stderr.get(i)));
+            }
+
+            IOException stdinFailure = writeStdin(stdin, processes.getFirst());
+
+            int[] returnCodes = new int[processes.size()];
+            for (int i = 0; i < processes.size(); i++) {
+                returnCodes[i] = processes.get(i).waitFor();
+            }
+            for (Thread pump : pumps) {
+                pump.join();
+            }
+            if (stdinFailure != null) {
+                throw stdinFailure;
+            }
+            return returnCodes;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // What the command line ahead of the parameters depends on. Unlike env and cwd these are never interpolated,
+    // so the cache holds an entry per configured command rather than per step.
+    private record Launch(String executable, Config.Limits limits, boolean absolute) {}
+
+    private ProcessBuilder processBuilder(Config.Command command, List<String> parameters) {
+        // The glob search otherwise costs a directory scan per step
+        Launch launch = new Launch(command.executable(), command.limits(), command.cwd() != null);
+        List<String> prefix = cacheLaunches ? launches.computeIfAbsent(launch, Main::prefix) : prefix(launch);
+
+        // A fresh list; concurrent instances of a step share their parameters
+        List<String> commandLine = new ArrayList<>(prefix.size() + parameters.size());
+        commandLine.addAll(prefix);
+        commandLine.addAll(parameters);
+        ProcessBuilder builder = new ProcessBuilder(commandLine);
+        if (!command.env().isEmpty()) {
+            builder.environment().putAll(command.env());
+        }
+        if (command.cwd() != null) {
+            builder.directory(new File(command.cwd()));
+        }
+        return builder;
+    }
+
+    private static List<String> prefix(Launch launch) {
+        Path exe = findExecutable(launch.executable());
+        List<String> prefix = new ArrayList<>();
+        Config.Limits limits = launch.limits();
+        if (limits != null && !limits.isEmpty()) {
+            // Limits are inherited across exec, so the shell sets them and then becomes the executable
+            String script = limits.ulimitArguments().stream()
+                    .map(arg -> "ulimit " + arg + " && ")
+                    .collect(Collectors.joining()) + "exec \"$0\" \"$@\"";
+            prefix.addAll(List.of("/bin/sh", "-c", script));
+        }
+        // A working directory would change what a relative path refers to
+        prefix.add(launch.absolute() ? exe.toAbsolutePath().toString() : exe.toString());
+        return List.copyOf(prefix);
+    }
+
+    // Flushed per read so scripted chunks arrive when they are produced. Failing to read the stdin source is
+    // returned (rather than thrown) so the caller can let the process finish before reporting it.
+    private static IOException writeStdin(InputStream stdin, Process process) {
+        OutputStream outputStream = process.getOutputStream();
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = stdin.read(buffer)) != -1) {
+                try {
+                    outputStream.write(buffer, 0, n);
+                    outputStream.flush();
+                } catch (IOException ex) {
+                    // The process closed its input (or was stopped); whatever it read is what it got
+                    return null;
+                }
+            }
+            return null;
+        } catch (IOException ex) {
+            return ex;
+        } finally {
+            try {
+                outputStream.close();
+            } catch (IOException ex) {
+                // As above, the process is no longer reading
+            }
+        }
+    }
+
+    void forgetExecutables() {
+        launches.clear();
+    }
+
+    // Benchmarks compare against resolving the executable for every step
+    void cacheLaunches(boolean cache) {
+        this.cacheLaunches = cache;
+    }
+
+    // The executable may be a glob, but only in the file name
+    static Path executableDirectory(String executable) {
+        int slash = executable.lastIndexOf('/');
+        Path parent = slash == -1 ? Path.of(".") : Path.of(executable.substring(0, slash));
+        return parent.toAbsolutePath().normalize();
+    }
+
+    static PathMatcher executableMatcher(String executable) {
+        String glob = String.format("glob:%s", executable.substring(executable.lastIndexOf('/')+1));
+        return FileSystems.getDefault().getPathMatcher(glob);
+    }
+
+    public static Path findExecutable(String executable) {
+        int slash = executable.lastIndexOf('/');
+        Path parent = Path.of(".");
+        if (slash != -1) {
+            parent = Path.of(executable.substring(0, slash));
+        }
+        PathMatcher matcher = executableMatcher(executable);
+
+        try (Stream<Path> paths = Files.find(parent, 1,
+                (file, attr) -> matcher.matches(file.getFileName()))) {
+            return paths.findFirst().orElseThrow(() -> {
+                String msg = String.format("Unable to locate executable at '%s'", executable);
+                return new RuntimeException(msg);
+            });
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    // How long a stopped process gets to exit on SIGTERM before it is killed
+    private static final long STOP_GRACE_MILLIS = 1000;
+
+    private static Thread pump(List<Process> processes, InputStream from, OutputStream to) {
+        return Thread.ofPlatform().daemon().start(() -> {
+            try {
+                from.transferTo(to);
+            } catch (StopProcessException ex) {
+                for (Process process : processes) {
+                    if (process.isAlive()) {
+                        stop(process);
+                        ex.processStopped();
+                    }
+                }
+                // Keep reading so a process that ignores SIGTERM can never block on a full pipe
+                try {
+                    from.transferTo(OutputStream.nullOutputStream());
+                } catch (IOException e) {
+                    // Stream closed underneath us; the process is gone
+                }
+            } catch (IOException ex) {
+                // Stream closed underneath us; the process is gone
+            }
+        });
+    }
+
+    private static void stop(Process process) {
+        process.descendants().forEach(ProcessHandle::destroy);
+        process.destroy();
+        process.onExit()
+                .orTimeout(STOP_GRACE_MILLIS, TimeUnit.MILLISECONDS)
+                .exceptionally(timeout -> {
+                    process.descendants().forEach(ProcessHandle::destroyForcibly);
+                    process.destroyForcibly();
+                    return process;
+                });
+    }
+
     public class FileManagement {
         @Option(names = "--keep-files", description = "Keep all temporary test files for review")
         public void selectKeepFiles(boolean flag) {
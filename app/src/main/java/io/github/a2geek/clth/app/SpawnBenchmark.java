@@ -0,0 +1,101 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth.app;
+
+import io.github.a2geek.clth.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures how quickly steps can be started, comparing a fresh executable lookup per step with
+ * the cached lookup used by {@link Main}. The launch mechanism is fixed per JVM, so compare
+ * mechanisms by running this again with -Djdk.lang.Process.launchMechanism=FORK (or VFORK).
+ * <p>
+ * Usage: SpawnBenchmark [-n count] [-t threads] executable [args...]
+ */
+public class SpawnBenchmark {
+    public static void main(String... args) throws Exception {
+        int count = 500;
+        int threads = 1;
+        int i = 0;
+        while (i < args.length && args[i].startsWith("-")) {
+            switch (args[i]) {
+                case "-n" -> count = Integer.parseInt(args[++i]);
+                case "-t" -> threads = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+            i++;
+        }
+        if (i >= args.length) {
+            System.err.println("Usage: SpawnBenchmark [-n count] [-t threads] executable [args...]");
+            System.exit(2);
+        }
+        Config.Command command = new Config.Command(null, args[i], false);
+        List<String> parameters = Arrays.asList(args).subList(i + 1, args.length);
+
+        System.out.printf("Launch mechanism: %s%n", System.getProperty("jdk.lang.Process.launchMechanism", "default"));
+        // Warm up the process machinery before measuring
+        run(new Main(), command, parameters, Math.min(count, 50), threads, false);
+        System.out.println(run(new Main(), command, parameters, count, threads, false).describe("lookup per step"));
+        System.out.println(run(new Main(), command, parameters, count, threads, true).describe("cached lookup"));
+    }
+
+    record Result(long[] latencies, long wallNanos, int threads) {
+        String describe(String label) {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            double mean = Arrays.stream(sorted).average().orElse(0) / 1e6;
+            return String.format("%-16s %6d spawns: %8.1f/s, mean %.2f ms, p50 %.2f ms, p99 %.2f ms (%d threads)",
+                    label, sorted.length, sorted.length / (wallNanos / 1e9), mean,
+                    percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, threads);
+        }
+        static long percentile(long[] sorted, double p) {
+            return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)];
+        }
+    }
+
+    static Result run(Main main, Config.Command command, List<String> parameters, int count, int threads,
+                      boolean cached) throws Exception {
+        main.cacheLaunches(cached);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int n = 0; n < count; n++) {
+            futures.add(executor.submit(() -> {
+                long stepStart = System.nanoTime();
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                main.execute(command, new ArrayList<>(parameters), InputStream.nullInputStream(), out, out);
+                return System.nanoTime() - stepStart;
+            }));
+        }
+        long[] latencies = new long[count];
+        for (int n = 0; n < count; n++) {
+            latencies[n] = futures.get(n).get();
+        }
+        long wall = System.nanoTime() - start;
+        executor.shutdown();
+        return new Result(latencies, wall, threads);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth.app;
+
+import io.github.a2geek.clth.ProcessProfile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures how quickly clth itself gets going: the time until the first test starts (the first
+ * "Test '...'" line), the time until it exits and the peak RSS, for the JVM and native builds.
+ * Each result is appended to a CSV file so startup can be tracked from build to build.
+ * <p>
+ * Usage: StartupBenchmark [-n runs] [-o results.csv] [--jvm jar] [--native executable] testFile...
+ */
+public class StartupBenchmark {
+    public static void main(String... args) throws Exception {
+        int runs = 10;
+        Path results = null;
+        String jar = null;
+        String executable = null;
+        int i = 0;
+        while (i < args.length && args[i].startsWith("-")) {
+            switch (args[i]) {
+                case "-n" -> runs = Integer.parseInt(args[++i]);
+                case "-o" -> results = Path.of(args[++i]);
+                case "--jvm" -> jar = args[++i];
+                case "--native" -> executable = args[++i];
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+            i++;
+        }
+        if (i >= args.length || (jar == null && executable == null)) {
+            System.err.println("Usage: StartupBenchmark [-n runs] [-o results.csv] [--jvm jar] [--native executable] testFile...");
+            System.exit(2);
+        }
+        List<String> testFiles = Arrays.asList(args).subList(i, args.length);
+
+        List<Result> measured = new ArrayList<>();
+        if (jar != null) {
+            String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+            measured.add(measure("jvm", command(testFiles, java, "-jar", jar), runs));
+        }
+        if (executable != null) {
+            try {
+                Path binary = Main.findExecutable(executable);
+                measured.add(measure("native", command(testFiles, binary.toString()), runs));
+            } catch (RuntimeException ex) {
+                System.out.printf("Skipping native: %s%n", ex.getMessage());
+            }
+        }
+        for (Result result : measured) {
+            System.out.println(result);
+            if (results != null) {
+                if (!Files.exists(results)) {
+                    Files.writeString(results, "timestamp,build,runs,first_test_p50_ms,exit_p50_ms,peak_rss_kb\n");
+                }
+                Files.writeString(results, result.csv(), StandardOpenOption.APPEND);
+            }
+        }
+    }
+
+    private static List<String> command(List<String> testFiles, String... program) {
+        List<String> command = new ArrayList<>(List.of(program));
+        command.addAll(testFiles);
+        return command;
+    }
+
+    record Result(String build, long[] firstTestMillis, long[] exitMillis, long peakRssKb) {
+        @Override
+        public String toString() {
+            return String.format("%-6s %3d runs: first test p50 %4d ms (min %4d), exit p50 %4d ms (min %4d), " +
+                    "peak RSS %d kB", build, exitMillis.length, median(firstTestMillis),
+                    Arrays.stream(firstTestMillis).min().orElse(0), median(exitMillis),
+                    Arrays.stream(exitMillis).min().orElse(0), peakRssKb);
+        }
+        String csv() {
+            return String.format("%s,%s,%d,%d,%d,%d%n", LocalDateTime.now().withNano(0), build, exitMillis.length,
+                    median(firstTestMillis), median(exitMillis), peakRssKb);
+        }
+        static long median(long[] values) {
+            long[] sorted = values.clone();
+            Arrays.sort(sorted);
+            return sorted.length == 0 ? 0 : sorted[sorted.length / 2];
+        }
+    }
+
+    static Result measure(String build, List<String> command, int runs) throws IOException, InterruptedException {
+        long[] firstTest = new long[runs];
+        long[] exit = new long[runs];
+        long peakRss = 0;
+        for (int n = 0; n < runs; n++) {
+            ProcessProfile profile = new ProcessProfile(Duration.ofMillis(5));
+            long start = System.nanoTime();
+            Process process = new ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            profile.start(process.pid());
+            firstTest[n] = -1;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (firstTest[n] == -1 && line.startsWith("Test '")) {
+                        firstTest[n] = Duration.ofNanos(System.nanoTime() - start).toMillis();
+                    }
+                }
+            }
+            process.waitFor();
+            exit[n] = Duration.ofNanos(System.nanoTime() - start).toMillis();
+            profile.stop();
+            ProcessProfile.Summary summary = profile.summary();
+            if (summary != null) {
+                peakRss = Math.max(peakRss, summary.peakRssKb());
+            }
+            if (firstTest[n] == -1) {
+                firstTest[n] = exit[n];
+            }
+        }
+        return new Result(build, firstTest, exit, peakRss);
+    }
+}
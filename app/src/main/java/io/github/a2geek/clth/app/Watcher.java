@@ -0,0 +1,165 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth.app;
+
+import io.github.a2geek.clth.Config;
+import io.github.a2geek.clth.DurationStats;
+import io.github.a2geek.clth.TestPlan;
+import io.github.a2geek.clth.TestSuite;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watch mode. Suites stay parsed in memory and only the suites affected by a change are run again.
+ * A suite depends on its YAML file, the 'file:' paths its steps read and the executables of its commands.
+ */
+public class Watcher {
+    // Editors and builds write files in several steps; wait for this much quiet before running
+    private static final Duration SETTLE = Duration.ofMillis(50);
+
+    private final Main main;
+    private final Path baseDirectory;
+    private final Map<Path,List<TestSuite>> suites = new LinkedHashMap<>();
+    private final Map<WatchKey,Path> directories = new HashMap<>();
+    private final DurationStats stats = new DurationStats();
+
+    public Watcher(Main main, List<Path> testFiles, Path baseDirectory) {
+        this.main = main;
+        this.baseDirectory = baseDirectory;
+        testFiles.forEach(testFile -> suites.put(testFile.toAbsolutePath().normalize(), List.of()));
+    }
+
+    public int run() throws Exception {
+        suites.replaceAll((testFile, ignored) -> load(testFile));
+        main.runAll(suites.values().stream().flatMap(List::stream).toList(), stats, List.of());
+        System.out.println("Watching for changes (Ctrl-C to stop)...");
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            while (true) {
+                register(watchService);
+                Set<Path> changed = awaitChanges(watchService);
+
+                List<TestSuite> affected = new ArrayList<>();
+                for (Map.Entry<Path,List<TestSuite>> entry : suites.entrySet()) {
+                    if (changed.contains(entry.getKey())) {
+                        entry.setValue(load(entry.getKey()));
+                        affected.addAll(entry.getValue());
+                    } else {
+                        entry.getValue().stream()
+                                .filter(testSuite -> changed.stream().anyMatch(path -> dependsOn(testSuite, path)))
+                                .forEach(affected::add);
+                    }
+                }
+                if (!affected.isEmpty()) {
+                    System.out.printf("%nChanged %s; running %d suites%n", changed, affected.size());
+                    // A rebuilt executable may have a new name that matches the glob
+                    main.forgetExecutables();
+                    main.runAll(affected, stats, List.of());
+                    // Test case files are deleted as each suite finishes; generated files only last while in use
+                    Config.TestFile.retainTemplates(suites.values().stream()
+                            .flatMap(List::stream)
+                            .flatMap(testSuite -> testSuite.files().values().stream())
+                            .collect(Collectors.toSet()));
+                    System.out.println("Watching for changes (Ctrl-C to stop)...");
+                }
+            }
+        }
+    }
+
+    private List<TestSuite> load(Path testFile) {
+        try {
+            if (TestPlan.isPlan(testFile)) {
+                return TestPlan.read(testFile);
+            }
+            List<TestSuite> testSuites = TestSuite.build(Config.load(Files.readString(testFile))).toList();
+            // A 'file:' path that refers to an undefined variable is reported now rather than while watching
+            testSuites.forEach(TestSuite::fileReferences);
+            return testSuites;
+        } catch (IOException | RuntimeException ex) {
+            // Most likely saved mid-edit; the next save loads it again
+            System.out.printf("Unable to load '%s': %s%n", testFile, ex.getMessage());
+            return List.of();
+        }
+    }
+
+    private boolean dependsOn(TestSuite testSuite, Path path) {
+        for (String reference : testSuite.fileReferences()) {
+            if (baseDirectory.resolve(reference).toAbsolutePath().normalize().equals(path)) {
+                return true;
+            }
+        }
+        for (String name : testSuite.commandNames()) {
+            Config.Command command = testSuite.commands().get(name);
+            if (command != null && command.executable() != null
+                    && Main.executableDirectory(command.executable()).equals(path.getParent())
+                    && Main.executableMatcher(command.executable()).matches(path.getFileName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Directories are registered (again) each time since a build may delete and recreate them
+    private void register(WatchService watchService) throws IOException {
+        Set<Path> watched = new LinkedHashSet<>();
+        for (Map.Entry<Path,List<TestSuite>> entry : suites.entrySet()) {
+            watched.add(entry.getKey().getParent());
+            for (TestSuite testSuite : entry.getValue()) {
+                testSuite.fileReferences().forEach(reference ->
+                        watched.add(baseDirectory.resolve(reference).toAbsolutePath().normalize().getParent()));
+                for (String name : testSuite.commandNames()) {
+                    Config.Command command = testSuite.commands().get(name);
+                    if (command != null && command.executable() != null) {
+                        watched.add(Main.executableDirectory(command.executable()));
+                    }
+                }
+            }
+        }
+        directories.keySet().removeIf(key -> !key.isValid());
+        for (Path directory : watched) {
+            if (Files.isDirectory(directory)) {
+                directories.put(directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), directory);
+            }
+        }
+    }
+
+    private Set<Path> awaitChanges(WatchService watchService) throws InterruptedException {
+        Set<Path> changed = new LinkedHashSet<>();
+        WatchKey key = watchService.take();
+        while (key != null) {
+            Path directory = directories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    // Events were lost, so treat every test file as changed
+                    changed.addAll(suites.keySet());
+                } else if (directory != null && event.context() instanceof Path name) {
+                    changed.add(directory.resolve(name));
+                }
+            }
+            key.reset();
+            key = watchService.poll(SETTLE.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return changed;
+    }
+}
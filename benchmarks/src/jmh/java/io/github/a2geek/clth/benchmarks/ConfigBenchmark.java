@@ -0,0 +1,56 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.github.a2geek.clth.Config;
+import io.github.a2geek.clth.TestSuite;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigBenchmark {
+    @Param({ "10", "100", "1000" })
+    public int testCases;
+
+    private String document;
+    private Config config;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        document = Payloads.config(testCases);
+        config = Config.load(document);
+    }
+
+    @Benchmark
+    public Config load() throws JsonProcessingException {
+        return Config.load(document);
+    }
+
+    @Benchmark
+    public List<TestSuite> build() {
+        return TestSuite.build(config).toList();
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth.benchmarks;
+
+import io.github.a2geek.clth.TestHarness;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiffBenchmark {
+    @Param({ "4096", "262144" })
+    public int size;
+
+    // One changed line in this many; the last is a single difference
+    @Param({ "10", "100", "1000000" })
+    public int changeEvery;
+
+    private String expected;
+    private String actual;
+
+    @Setup
+    public void setup() {
+        expected = Payloads.output(size, 7);
+        actual = Payloads.mutate(expected, changeEvery);
+    }
+
+    @Benchmark
+    public String diff() {
+        return TestHarness.diff(expected, actual);
+    }
+}
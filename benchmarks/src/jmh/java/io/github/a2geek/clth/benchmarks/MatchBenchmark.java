@@ -0,0 +1,83 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth.benchmarks;
+
+import io.github.a2geek.clth.Config;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchBenchmark {
+    // Typical help text, a long listing, and a large report
+    @Param({ "1024", "65536", "1048576" })
+    public int size;
+
+    private String expected;
+    private String actual;
+    private String fragment;
+    private String regex;
+    private byte[] expectedBytes;
+    private byte[] actualBytes;
+    private byte[] fragmentBytes;
+
+    @Setup
+    public void setup() {
+        expected = Payloads.output(size, 42);
+        // A separate copy so equals cannot short-circuit on identity
+        actual = new String(expected.toCharArray());
+        fragment = expected.substring(expected.length() - 40);
+        // "Ends with" is the usual shape of a regex expectation
+        regex = ".*" + Pattern.quote(expected.lines().reduce((a, b) -> b).orElse("")) + "\\s*";
+        expectedBytes = expected.getBytes(StandardCharsets.UTF_8);
+        actualBytes = actual.getBytes(StandardCharsets.UTF_8);
+        fragmentBytes = fragment.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public boolean exactText() {
+        return Config.MatchType.exact.matches(expected, actual);
+    }
+
+    @Benchmark
+    public boolean containsText() {
+        return Config.MatchType.contains.matches(fragment, actual);
+    }
+
+    @Benchmark
+    public boolean regexText() {
+        return Config.MatchType.regex.matches(regex, actual);
+    }
+
+    @Benchmark
+    public boolean exactBytes() {
+        return Config.MatchType.exact.matches(expectedBytes, actualBytes);
+    }
+
+    @Benchmark
+    public boolean containsBytes() {
+        return Config.MatchType.contains.matches(fragmentBytes, actualBytes);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth.benchmarks;
+
+import java.util.SplittableRandom;
+
+/** Deterministic payloads shaped like real CLI output and test configurations. */
+final class Payloads {
+    private static final String[] WORDS = { "alpha", "beta", "gamma", "delta", "file", "catalog", "disk", "volume",
+            "sector", "track", "error", "ok", "0x1F", "1024", "  ", "\t" };
+
+    private Payloads() {}
+
+    /** Text output of roughly the given size, in lines of a few words. */
+    static String output(int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder sb = new StringBuilder(size + 80);
+        while (sb.length() < size) {
+            int words = 3 + random.nextInt(8);
+            for (int i = 0; i < words; i++) {
+                if (i > 0) {
+                    sb.append(' ');
+                }
+                sb.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** The same output with roughly one line in every "every" changed. */
+    static String mutate(String output, int every) {
+        String[] lines = output.split("\n", -1);
+        for (int i = every / 2; i < lines.length; i += every) {
+            lines[i] = lines[i] + " (changed)";
+        }
+        return String.join("\n", lines);
+    }
+
+    /** A configuration with the given number of test cases, each with iterated variables and a few steps. */
+    static String config(int testCases) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("""
+                commands:
+                  cli:
+                    main-class: com.example.Main
+                    system-exit: yes
+                  native:
+                    executable: build/native/nativeCompile/cli-*
+                files:
+                  disk:
+                    type: binary
+                    content: 00 01 02 03 04 05 06 07 08 09 0a 0b 0c 0d 0e 0f
+                  notes:
+                    type: text
+                    content: |
+                      Some notes
+                      across lines
+                tests:
+                """);
+        for (int i = 0; i < testCases; i++) {
+            sb.append(String.format("""
+                      - name: test case %d
+                        variables:
+                          cmd: [ cli, native, cli, native ]
+                          format: [ text, json, csv, xml ]
+                          file: $disk
+                        steps:
+                          - command: $cmd create $file --format=$format
+                            stdout: "Created file %d"
+                          - command: $cmd list $file
+                            stdin: file:notes.txt
+                            criteria:
+                              match: contains
+                              whitespace: trim
+                            stdout: |
+                              File %d
+                              Size 1024
+                          - command: $cmd delete $file
+                            rc: 0
+                    """, i, i, i));
+        }
+        return sb.toString();
+    }
+
+    /** Hex content as used by binary files: space separated bytes, 16 per line. */
+    static String hex(int bytes, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder sb = new StringBuilder(bytes * 3);
+        for (int i = 0; i < bytes; i++) {
+            sb.append(String.format("%02x", random.nextInt(256)));
+            sb.append(i % 16 == 15 ? '\n' : ' ');
+        }
+        return sb.toString();
+    }
+}
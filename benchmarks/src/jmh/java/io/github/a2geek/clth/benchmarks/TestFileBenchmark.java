@@ -0,0 +1,55 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth.benchmarks;
+
+import io.github.a2geek.clth.Config;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TestFileBenchmark {
+    // A boot sector, a small program, and a full 140K disk image
+    @Param({ "256", "16384", "143360" })
+    public int bytes;
+
+    private Config.TestFile binary;
+    private Config.TestFile text;
+
+    @Setup
+    public void setup() {
+        String hex = Payloads.hex(bytes, 3);
+        binary = new Config.TestFile(Config.FileType.binary, hex, null, null);
+        text = new Config.TestFile(Config.FileType.text, Payloads.output(bytes, 3), null, null);
+    }
+
+    @Benchmark
+    public byte[] binaryContent() {
+        return binary.contentAsBytes();
+    }
+
+    @Benchmark
+    public byte[] textContent() {
+        return text.contentAsBytes();
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton over bytes. Built once with every pattern and then used to find which
+ * patterns occur in a buffer with a single linear pass. The failure links are folded into a full
+ * transition table, so scanning is one array lookup per input byte.
+ */
+public class AhoCorasick {
+    private final int patternCount;
+    private final int[][] transitions;
+    private final int[][] outputs;
+
+    public AhoCorasick(List<byte[]> patterns) {
+        this.patternCount = patterns.size();
+        List<int[]> gotos = new ArrayList<>();
+        List<List<Integer>> outs = new ArrayList<>();
+        gotos.add(newState());
+        outs.add(new ArrayList<>());
+        for (int p = 0; p < patterns.size(); p++) {
+            int state = 0;
+            for (byte b : patterns.get(p)) {
+                int c = b & 0xff;
+                if (gotos.get(state)[c] == -1) {
+                    gotos.get(state)[c] = gotos.size();
+                    gotos.add(newState());
+                    outs.add(new ArrayList<>());
+                }
+                state = gotos.get(state)[c];
+            }
+            outs.get(state).add(p);
+        }
+
+        // Breadth-first: resolve failure links and turn missing edges into the failure state's edge
+        int[] failure = new int[gotos.size()];
+        Queue<Integer> queue = new ArrayDeque<>();
+        int[] root = gotos.get(0);
+        for (int c = 0; c < 256; c++) {
+            if (root[c] == -1) {
+                root[c] = 0;
+            } else {
+                failure[root[c]] = 0;
+                queue.add(root[c]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            int[] edges = gotos.get(state);
+            outs.get(state).addAll(outs.get(failure[state]));
+            for (int c = 0; c < 256; c++) {
+                int next = edges[c];
+                if (next == -1) {
+                    edges[c] = gotos.get(failure[state])[c];
+                } else {
+                    failure[next] = gotos.get(failure[state])[c];
+                    queue.add(next);
+                }
+            }
+        }
+
+        this.transitions = gotos.toArray(new int[0][]);
+        this.outputs = new int[outs.size()][];
+        for (int i = 0; i < outs.size(); i++) {
+            this.outputs[i] = outs.get(i).stream().distinct().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private static int[] newState() {
+        int[] edges = new int[256];
+        Arrays.fill(edges, -1);
+        return edges;
+    }
+
+    /** Returns the indexes of every pattern found; stops early once all patterns have been seen. */
+    public BitSet scan(byte[] text, int length) {
+        BitSet found = new BitSet(patternCount);
+        int seen = 0;
+        // Empty patterns are always "found"
+        for (int p : outputs[0]) {
+            found.set(p);
+            seen++;
+        }
+        int state = 0;
+        for (int i = 0; i < length && seen < patternCount; i++) {
+            state = transitions[state][text[i] & 0xff];
+            for (int p : outputs[state]) {
+                if (!found.get(p)) {
+                    found.set(p);
+                    seen++;
+                }
+            }
+        }
+        return found;
+    }
+
+    public BitSet scan(byte[] text) {
+        return scan(text, text.length);
+    }
+
+    public BitSet scan(InputStream inputStream) throws IOException {
+        BitSet found = scan(new byte[0], 0);
+        int seen = found.cardinality();
+        int state = 0;
+        byte[] buffer = new byte[64 * 1024];
+        int n;
+        while (seen < patternCount && (n = inputStream.read(buffer)) != -1) {
+            for (int i = 0; i < n && seen < patternCount; i++) {
+                state = transitions[state][buffer[i] & 0xff];
+                for (int p : outputs[state]) {
+                    if (!found.get(p)) {
+                        found.set(p);
+                        seen++;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    public int patternCount() {
+        return patternCount;
+    }
+}
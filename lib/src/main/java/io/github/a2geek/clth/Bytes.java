@@ -0,0 +1,48 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import java.util.Arrays;
+
+/** Byte array searching; the range comparisons use the JDK's vectorized mismatch intrinsics. */
+public class Bytes {
+    public static int indexOf(byte[] haystack, byte[] needle) {
+        return indexOf(haystack, haystack.length, needle, 0);
+    }
+
+    public static int indexOf(byte[] haystack, int length, byte[] needle, int fromIndex) {
+        if (needle.length == 0) {
+            return Math.min(fromIndex, length);
+        }
+        final byte first = needle[0];
+        final int last = length - needle.length;
+        for (int i = fromIndex; i <= last; i++) {
+            if (haystack[i] != first) {
+                continue;
+            }
+            if (Arrays.equals(haystack, i + 1, i + needle.length, needle, 1, needle.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static boolean contains(byte[] haystack, byte[] needle) {
+        return indexOf(haystack, needle) != -1;
+    }
+}
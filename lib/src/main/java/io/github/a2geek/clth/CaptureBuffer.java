@@ -0,0 +1,176 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Output capture that keeps the first part in memory and spills the remainder to a temporary
+ * file, so a runaway process cannot exhaust the heap. An optional maximum stops capturing and
+ * signals (with {@link StopProcessException}) that the process should be stopped.
+ */
+public class CaptureBuffer extends OutputStream {
+    public static final long UNLIMITED = -1;
+
+    private final int memoryLimit;
+    private final long maxOutput;
+    private byte[] memory = new byte[1024];
+    private int memoryCount;
+    private Path spillFile;
+    private OutputStream spill;
+    private long size;
+    private boolean limitExceeded;
+
+    public CaptureBuffer(int memoryLimit, long maxOutput) {
+        this.memoryLimit = memoryLimit;
+        this.maxOutput = maxOutput;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        if (limitExceeded) {
+            return;
+        }
+        if (maxOutput != UNLIMITED && size + len > maxOutput) {
+            append(b, off, (int) (maxOutput - size));
+            limitExceeded = true;
+            String msg = String.format("Output exceeded %d bytes", maxOutput);
+            throw new StopProcessException(msg);
+        }
+        append(b, off, len);
+    }
+
+    private void append(byte[] b, int off, int len) throws IOException {
+        if (spill == null) {
+            int toMemory = Math.min(len, memoryLimit - memoryCount);
+            if (memoryCount + toMemory > memory.length) {
+                int capacity = Math.max(memory.length * 2, memoryCount + toMemory);
+                memory = Arrays.copyOf(memory, Math.min(capacity, memoryLimit));
+            }
+            System.arraycopy(b, off, memory, memoryCount, toMemory);
+            memoryCount += toMemory;
+            size += toMemory;
+            off += toMemory;
+            len -= toMemory;
+            if (len == 0) {
+                return;
+            }
+            spillFile = Files.createTempFile("clth-capture-", ".out");
+            spill = new BufferedOutputStream(Files.newOutputStream(spillFile), 64 * 1024);
+        }
+        spill.write(b, off, len);
+        size += len;
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized boolean isSpilled() {
+        return spill != null;
+    }
+
+    public synchronized boolean limitExceeded() {
+        return limitExceeded;
+    }
+
+    public synchronized InputStream inputStream() throws IOException {
+        InputStream inMemory = new ByteArrayInputStream(memory, 0, memoryCount);
+        if (spill == null) {
+            return inMemory;
+        }
+        spill.flush();
+        return new SequenceInputStream(inMemory, new BufferedInputStream(Files.newInputStream(spillFile)));
+    }
+
+    public synchronized byte[] toByteArray() throws IOException {
+        if (spill == null) {
+            return Arrays.copyOf(memory, memoryCount);
+        }
+        if (size > Integer.MAX_VALUE - 8) {
+            String msg = String.format("Captured output of %d bytes is too large to compare in memory", size);
+            throw new IOException(msg);
+        }
+        try (InputStream inputStream = inputStream()) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    // At most the first maxBytes of the output, for reporting without materializing all of it
+    public synchronized byte[] head(int maxBytes) throws IOException {
+        if (maxBytes <= memoryCount || spill == null) {
+            return Arrays.copyOf(memory, Math.min(maxBytes, memoryCount));
+        }
+        try (InputStream inputStream = inputStream()) {
+            return inputStream.readNBytes(maxBytes);
+        }
+    }
+
+    // Searches through spilled output as a stream
+    public synchronized boolean contains(byte[] needle) throws IOException {
+        if (spill == null) {
+            return Bytes.indexOf(memory, memoryCount, needle, 0) != -1;
+        }
+        try (InputStream inputStream = inputStream()) {
+            return new AhoCorasick(List.of(needle)).scan(inputStream).get(0);
+        }
+    }
+
+    // Compares without materializing spilled output
+    public synchronized boolean contentEquals(byte[] expected) throws IOException {
+        if (size != expected.length) {
+            return false;
+        }
+        if (!Arrays.equals(memory, 0, memoryCount, expected, 0, memoryCount)) {
+            return false;
+        }
+        if (spill == null) {
+            return true;
+        }
+        spill.flush();
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(spillFile))) {
+            byte[] buffer = new byte[64 * 1024];
+            int offset = memoryCount;
+            int n;
+            while ((n = inputStream.read(buffer)) != -1) {
+                if (!Arrays.equals(buffer, 0, n, expected, offset, offset + n)) {
+                    return false;
+                }
+                offset += n;
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (spill != null) {
+            spill.close();
+            Files.deleteIfExists(spillFile);
+        }
+    }
+}
@@ -20,22 +20,30 @@ package io.github.a2geek.clth;
 import com.fasterxml.jackson.annotation.*;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JavaType;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 import com.fasterxml.jackson.databind.util.Converter;
-import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
-import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.HexFormat;
-import java.util.List;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_EMPTY;
 
@@ -43,18 +51,87 @@ public record Config(@JsonInclude(NON_EMPTY) Map<String,Command> commands,
                      @JsonSetter(nulls=Nulls.AS_EMPTY) Map<String,TestFile> files,
                      @JsonInclude(NON_EMPTY) List<TestCase> tests) {
     public static Config load(String configDocument) throws JsonProcessingException {
-        ObjectMapper mapper = new YAMLMapper();
-        mapper.registerModule(new Jdk8Module());
-        return mapper.readValue(configDocument, Config.class);
+        Events.ConfigLoad event = new Events.ConfigLoad();
+        event.begin();
+        Config config = ConfigBinder.load(configDocument);
+        if (event.shouldCommit()) {
+            event.documentSize = configDocument.length();
+            event.testCases = config.tests() == null ? 0 : config.tests().size();
+            event.commit();
+        }
+        return config;
     }
 
     public record Command(@JsonProperty("main-class") @JsonInclude(NON_EMPTY) String mainClass,
                           @JsonInclude(NON_EMPTY) String executable,
-                          @JsonProperty("system-exit") boolean systemExit) {}
-    public record TestFile(FileType type, String content, String prefix, String suffix) {
+                          @JsonProperty("system-exit") boolean systemExit,
+                          @JsonSetter(nulls=Nulls.AS_EMPTY) Map<String,String> env,
+                          String cwd,
+                          Limits limits) {
+        public Command(String mainClass, String executable, boolean systemExit) {
+            this(mainClass, executable, systemExit, Map.of(), null, null);
+        }
+        @Override
+        public Map<String,String> env() {
+            return env == null ? Map.of() : env;
+        }
+        public boolean hasEnvironment() {
+            return !env().isEmpty() || cwd != null || (limits != null && !limits.isEmpty());
+        }
+        /** The command as a step runs it: step settings override (or add to) the command's. */
+        public Command forStep(Map<String,String> stepEnv, String stepCwd, Limits stepLimits) {
+            Map<String,String> mergedEnv = new LinkedHashMap<>(env());
+            mergedEnv.putAll(stepEnv);
+            Limits mergedLimits = limits == null ? stepLimits : limits.override(stepLimits);
+            return new Command(mainClass, executable, systemExit, mergedEnv, stepCwd != null ? stepCwd : cwd,
+                    mergedLimits);
+        }
+    }
+    /** Resource limits in the style of ulimit; applied to executables only. */
+    public record Limits(@JsonProperty("address-space") String addressSpace,
+                         @JsonProperty("cpu-seconds") Integer cpuSeconds,
+                         @JsonProperty("open-files") Integer openFiles) {
+        public boolean isEmpty() {
+            return addressSpace == null && cpuSeconds == null && openFiles == null;
+        }
+        public Limits override(Limits other) {
+            if (other == null) {
+                return this;
+            }
+            return new Limits(other.addressSpace != null ? other.addressSpace : addressSpace,
+                    other.cpuSeconds != null ? other.cpuSeconds : cpuSeconds,
+                    other.openFiles != null ? other.openFiles : openFiles);
+        }
+        // Shell ulimit arguments; address space is given to ulimit in kilobytes
+        public List<String> ulimitArguments() {
+            List<String> args = new ArrayList<>();
+            if (addressSpace != null) {
+                args.add("-v " + Math.max(1, parseSize(addressSpace) / 1024));
+            }
+            if (cpuSeconds != null) {
+                args.add("-t " + cpuSeconds);
+            }
+            if (openFiles != null) {
+                args.add("-n " + openFiles);
+            }
+            return args;
+        }
+    }
+    public record TestFile(FileType type, String content, String prefix, String suffix,
+                           String size, Long seed, Long count) {
+        // Generated content is written once per run as a read-only template that test cases link to
+        private static final Map<TestFile,FutureTask<File>> templates = new ConcurrentHashMap<>();
+
+        public TestFile(FileType type, String content, String prefix, String suffix) {
+            this(type, content, prefix, suffix, null, null, null);
+        }
+
         public byte[] contentAsBytes() {
+            return contentAsBytes(Charset.defaultCharset());
+        }
+        public byte[] contentAsBytes(Charset charset) {
             return switch (type) {
-                case text -> content.getBytes();
+                case text -> content.getBytes(charset);
                 case binary -> {
                     ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
                     for (String value : content.split("\\s+")) {
@@ -63,16 +140,44 @@ public record Config(@JsonInclude(NON_EMPTY) Map<String,Command> commands,
                     yield outputStream.toByteArray();
                 }
                 case temporary -> new byte[0];
+                case random, repeat, lines -> {
+                    try (InputStream inputStream = contentAsStream(charset)) {
+                        yield inputStream.readAllBytes();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+        }
+        public InputStream contentAsStream(Charset charset) {
+            return switch (type) {
+                case random -> GeneratedInputStream.random(parseSize(required(size, "size")),
+                        seed == null ? 0 : seed);
+                case repeat -> {
+                    byte[] pattern = required(content, "content").getBytes(charset);
+                    yield GeneratedInputStream.pattern(pattern.length * required(count, "count"), pattern);
+                }
+                case lines -> GeneratedInputStream.lines(required(content, "content"), required(count, "count"), charset);
+                default -> new ByteArrayInputStream(contentAsBytes(charset));
             };
         }
+        public boolean isGenerated() {
+            return type == FileType.random || type == FileType.repeat || type == FileType.lines;
+        }
+        private <T> T required(T value, String name) {
+            if (value == null) {
+                String msg = String.format("File type '%s' requires '%s'", type, name);
+                throw new RuntimeException(msg);
+            }
+            return value;
+        }
         public File asFile() {
             try {
-                byte[] initialData = contentAsBytes();
-                String pfx = prefix;
-                if (pfx == null || pfx.length() < 3) {
-                    pfx = "clth-";
+                if (isGenerated()) {
+                    return link(template());
                 }
-                File file = File.createTempFile(pfx, suffix);
+                byte[] initialData = contentAsBytes();
+                File file = createTempFile();
                 if (initialData.length > 0) {
                     try (OutputStream outputStream = new FileOutputStream(file)) {
                         outputStream.write(initialData);
@@ -83,6 +188,95 @@ public record Config(@JsonInclude(NON_EMPTY) Map<String,Command> commands,
                 throw new UncheckedIOException(e);
             }
         }
+        private File createTempFile() throws IOException {
+            String pfx = prefix;
+            if (pfx == null || pfx.length() < 3) {
+                pfx = "clth-";
+            }
+            return File.createTempFile(pfx, suffix);
+        }
+        // A long session (--watch) deletes the templates of files that are no longer configured
+        public static void retainTemplates(Collection<TestFile> files) {
+            templates.entrySet().removeIf(entry -> {
+                if (files.contains(entry.getKey())) {
+                    return false;
+                }
+                if (entry.getValue().state() == Future.State.SUCCESS) {
+                    entry.getValue().resultNow().delete();
+                }
+                return true;
+            });
+        }
+        // The first caller generates the template; others (for this file only) wait for it
+        private File template() {
+            while (true) {
+                FutureTask<File> task = new FutureTask<>(this::generate);
+                FutureTask<File> existing = templates.putIfAbsent(this, task);
+                if (existing == null) {
+                    existing = task;
+                    task.run();
+                }
+                try {
+                    File file = existing.get();
+                    if (file.exists()) {
+                        return file;
+                    }
+                    templates.remove(this, existing);
+                } catch (ExecutionException e) {
+                    templates.remove(this, existing);
+                    if (e.getCause() instanceof RuntimeException cause) {
+                        throw cause;
+                    }
+                    throw new RuntimeException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        // A read-only hard link shares the template without copying it. Where the link would still be
+        // writable (running as root, say) or cannot be made, the test case gets its own copy instead.
+        private File link(File template) throws IOException {
+            File file = createTempFile();
+            Files.delete(file.toPath());
+            try {
+                Files.createLink(file.toPath(), template.toPath());
+                if (!Files.isWritable(file.toPath())) {
+                    return file;
+                }
+                Files.delete(file.toPath());
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                // Copied below
+            }
+            Files.copy(template.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            file.setWritable(true);
+            return file;
+        }
+        // Streams to disk in large chunks so the content never has to fit in memory. Text is encoded like
+        // streamed content with the default criteria charset, so both give the same bytes.
+        private File generate() {
+            try {
+                File file = File.createTempFile("clth-template-", suffix);
+                // Only the template; copies given to test cases follow --keep-files
+                file.deleteOnExit();
+                try (InputStream inputStream = contentAsStream(StandardCharsets.UTF_8);
+                     FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                    ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+                    int n;
+                    while ((n = inputStream.read(buffer.array(), 0, buffer.capacity())) != -1) {
+                        buffer.limit(n).position(0);
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                        buffer.clear();
+                    }
+                }
+                file.setReadOnly();
+                return file;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
     public record TestCase(@JsonInclude(NON_EMPTY) String name,
                            @JsonSetter(nulls=Nulls.AS_EMPTY) Map<String,Object> variables,
@@ -92,13 +286,79 @@ public record Config(@JsonInclude(NON_EMPTY) Map<String,Command> commands,
                        @JsonSetter(nulls=Nulls.SET) String stdout,
                        @JsonSetter(nulls=Nulls.SET) String stderr,
                        MatchCriteria criteria,
-                       @JsonProperty("rc") int returnCode) {
+                       @JsonProperty("rc") int returnCode,
+                       @JsonProperty("stdout-fragments") Fragments stdoutFragments,
+                       @JsonProperty("stderr-fragments") Fragments stderrFragments,
+                       @JsonProperty("expect-lines") @JsonSetter(nulls=Nulls.AS_EMPTY) List<String> expectLines,
+                       @JsonProperty("reject-lines") @JsonSetter(nulls=Nulls.AS_EMPTY) List<String> rejectLines,
+                       @JsonProperty("max-output") String maxOutput,
+                       @JsonProperty("stdin-script") @JsonSetter(nulls=Nulls.AS_EMPTY) List<StdinChunk> stdinScript,
+                       @JsonSetter(nulls=Nulls.AS_EMPTY) Map<String,String> env,
+                       String cwd,
+                       Limits limits,
+                       @JsonProperty("profile-dump") String profileDump,
+                       @JsonSetter(nulls=Nulls.AS_EMPTY) List<Step> pipe,
+                       int concurrency) {
         @Override
         public MatchCriteria criteria() {
-            return criteria == null ? new MatchCriteria(MatchType.exact, Whitespace.exact) : criteria;
+            return criteria == null ? new MatchCriteria(MatchType.exact, Whitespace.exact, null) : criteria;
+        }
+        // As configured (before defaults); test plans keep exactly what was loaded
+        MatchCriteria declaredCriteria() {
+            return criteria;
+        }
+        @Override
+        public Map<String,String> env() {
+            return env == null ? Map.of() : env;
+        }
+        @Override
+        public List<Step> pipe() {
+            return pipe == null ? List.of() : pipe;
+        }
+        /** The commands this step runs: the pipe stages, or just this step. */
+        public List<Step> stages() {
+            return pipe().isEmpty() ? List.of(this) : pipe();
+        }
+        public long maxOutputBytes() {
+            return maxOutput == null ? CaptureBuffer.UNLIMITED : parseSize(maxOutput);
         }
     }
-    public record MatchCriteria(MatchType match, Whitespace whitespace) {
+
+    public record StdinChunk(String send, String delay, @JsonProperty("wait-for") String waitFor, String timeout) {}
+
+    // Sizes such as "512", "64k", "10MB" or "1 GiB" (binary multiples)
+    public static long parseSize(String value) {
+        var matcher = Pattern.compile("(?i)\\s*(\\d+)\\s*(([kmg])i?b?|b)?\\s*").matcher(value);
+        if (!matcher.matches()) {
+            String msg = String.format("Unable to parse size '%s'", value);
+            throw new IllegalArgumentException(msg);
+        }
+        long size = Long.parseLong(matcher.group(1));
+        String unit = matcher.group(3) == null ? "" : matcher.group(3).toLowerCase();
+        return switch (unit) {
+            case "k" -> size << 10;
+            case "m" -> size << 20;
+            case "g" -> size << 30;
+            default -> size;
+        };
+    }
+
+    // Durations such as "250ms", "2s" or "1m"; a bare number is milliseconds
+    public static Duration parseDuration(String value) {
+        var matcher = Pattern.compile("(?i)\\s*(\\d+)\\s*(ms|s|m)?\\s*").matcher(value);
+        if (!matcher.matches()) {
+            String msg = String.format("Unable to parse duration '%s'", value);
+            throw new IllegalArgumentException(msg);
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        String unit = matcher.group(2) == null ? "ms" : matcher.group(2).toLowerCase();
+        return switch (unit) {
+            case "s" -> Duration.ofSeconds(amount);
+            case "m" -> Duration.ofMinutes(amount);
+            default -> Duration.ofMillis(amount);
+        };
+    }
+    public record MatchCriteria(MatchType match, Whitespace whitespace, Charset charset) {
         @Override
         public MatchType match() {
             return match == null ? MatchType.exact : match;
@@ -107,25 +367,65 @@ public record Config(@JsonInclude(NON_EMPTY) Map<String,Command> commands,
         public Whitespace whitespace() {
             return whitespace == null ? Whitespace.exact : whitespace;
         }
+        @Override
+        public Charset charset() {
+            return charset == null ? StandardCharsets.UTF_8 : charset;
+        }
+        MatchType declaredMatch() {
+            return match;
+        }
+        Whitespace declaredWhitespace() {
+            return whitespace;
+        }
+        Charset declaredCharset() {
+            return charset;
+        }
+        // Raw bytes can be compared directly unless whitespace handling or the match itself needs text
+        public boolean isByteComparable() {
+            return whitespace() == Whitespace.exact && match().byteMatchFn != null;
+        }
     }
 
-    public enum FileType { text, binary, temporary }
+    public record Fragments(@JsonSetter(nulls=Nulls.AS_EMPTY) List<String> required,
+                            @JsonSetter(nulls=Nulls.AS_EMPTY) List<String> forbidden) {
+        // Matrix iterations share the same Step instances, so the automaton is built once per step and charset
+        private static final Map<Fragments,Map<Charset,AhoCorasick>> MATCHERS =
+                Collections.synchronizedMap(new WeakHashMap<>());
+
+        public AhoCorasick matcher(Charset charset) {
+            return MATCHERS.computeIfAbsent(this, f -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(charset, cs -> new AhoCorasick(Stream.concat(required.stream(), forbidden.stream())
+                            .map(fragment -> fragment.getBytes(cs))
+                            .toList()));
+        }
+    }
+
+    public enum FileType { text, binary, temporary, random, repeat, lines }
 
     public enum MatchType {
-        exact(String::equals),
-        ignore((expected,actual) -> true),
-        contains((expected, actual) -> actual.contains(expected)),
-        regex((regex,actual) -> Pattern.compile(regex, Pattern.DOTALL).matcher(actual).matches());
+        exact(String::equals, Arrays::equals),
+        ignore((expected,actual) -> true, (expected,actual) -> true),
+        contains((expected, actual) -> actual.contains(expected), (expected, actual) -> Bytes.contains(actual, expected)),
+        regex((regex,actual) -> Pattern.compile(regex, Pattern.DOTALL).matcher(actual).matches(), null);
 
         private final BiFunction<String,String,Boolean> matchFn;
+        private final BiFunction<byte[],byte[],Boolean> byteMatchFn;
 
-        MatchType(BiFunction<String,String,Boolean> matchFn) {
+        MatchType(BiFunction<String,String,Boolean> matchFn, BiFunction<byte[],byte[],Boolean> byteMatchFn) {
             this.matchFn = matchFn;
+            this.byteMatchFn = byteMatchFn;
         }
 
         public boolean matches(String expected, String actual) {
             return matchFn.apply(expected, actual);
         }
+        public boolean matches(byte[] expected, byte[] actual) {
+            if (byteMatchFn == null) {
+                String msg = String.format("Match type '%s' cannot compare bytes", this);
+                throw new UnsupportedOperationException(msg);
+            }
+            return byteMatchFn.apply(expected, actual);
+        }
     }
 
     public enum Whitespace {
@@ -0,0 +1,400 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * Builds a {@link Config} from the YAML tree with plain code. Data binding finds the records, their
+ * annotations and constructors through reflection on every run (and needs reflection metadata in a
+ * native image); this applies the same rules directly. Keep it in step with the annotations on Config:
+ * AS_EMPTY components default to empty, unknown fields are errors and scalars are coerced to the
+ * component type.
+ */
+final class ConfigBinder {
+    // Only the parser and node factory are used, so one mapper is safely shared
+    static final ObjectMapper MAPPER = new YAMLMapper();
+
+    private ConfigBinder() {}
+
+    @FunctionalInterface
+    private interface Binder<T> {
+        T bind(JsonNode node, String path) throws JsonMappingException;
+    }
+
+    static Config load(String document) throws JsonProcessingException {
+        JsonNode node;
+        try (JsonParser parser = MAPPER.createParser(document)) {
+            node = parser.nextToken() == null ? null : read(parser);
+        } catch (JsonProcessingException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        if (node == null) {
+            throw fail("No content in configuration document");
+        }
+        return config(node, "");
+    }
+
+    /**
+     * A number or boolean as it was written. Data binding gives a String component the scalar's text
+     * ("1.10", "0x10", "1e3"), which the tree model would otherwise lose; everything else uses the value.
+     */
+    private static final class Scalar extends TextNode {
+        private final JsonNode value;
+
+        Scalar(String text, JsonNode value) {
+            super(text);
+            this.value = value;
+        }
+    }
+
+    private static JsonNode read(JsonParser parser) throws IOException {
+        JsonNodeFactory nodes = MAPPER.getNodeFactory();
+        return switch (parser.currentToken()) {
+            case START_OBJECT -> {
+                ObjectNode object = nodes.objectNode();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    parser.nextToken();
+                    object.set(name, read(parser));
+                }
+                yield object;
+            }
+            case START_ARRAY -> {
+                ArrayNode array = nodes.arrayNode();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    array.add(read(parser));
+                }
+                yield array;
+            }
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> new Scalar(parser.getText(), switch (parser.getNumberType()) {
+                case INT -> nodes.numberNode(parser.getIntValue());
+                case LONG -> nodes.numberNode(parser.getLongValue());
+                case BIG_INTEGER -> nodes.numberNode(parser.getBigIntegerValue());
+                case FLOAT, DOUBLE -> nodes.numberNode(parser.getDoubleValue());
+                case BIG_DECIMAL -> nodes.numberNode(parser.getDecimalValue());
+            });
+            case VALUE_TRUE, VALUE_FALSE -> new Scalar(parser.getText(), nodes.booleanNode(parser.getBooleanValue()));
+            case VALUE_NULL -> nodes.nullNode();
+            default -> nodes.textNode(parser.getText());
+        };
+    }
+
+    private static JsonNode value(JsonNode node) {
+        return node instanceof Scalar scalar ? scalar.value : node;
+    }
+
+    static Config config(JsonNode node, String path) throws JsonMappingException {
+        fields(node, path, "commands", "files", "tests");
+        return new Config(
+                map(node.get("commands"), path + "commands", ConfigBinder::command, null),
+                map(node.get("files"), path + "files", ConfigBinder::testFile, Map.of()),
+                list(node.get("tests"), path + "tests", ConfigBinder::testCase, null));
+    }
+
+    static Config.Command command(JsonNode node, String path) throws JsonMappingException {
+        if (isNull(node)) {
+            return null;
+        }
+        fields(node, path, "main-class", "executable", "system-exit", "env", "cwd", "limits");
+        return new Config.Command(
+                string(node.get("main-class"), path + ".main-class"),
+                string(node.get("executable"), path + ".executable"),
+                bool(node.get("system-exit"), path + ".system-exit"),
+                map(node.get("env"), path + ".env", ConfigBinder::string, Map.of()),
+                string(node.get("cwd"), path + ".cwd"),
+                limits(node.get("limits"), path + ".limits"));
+    }
+
+    static Config.Limits limits(JsonNode node, String path) throws JsonMappingException {
+        if (isNull(node)) {
+            return null;
+        }
+        fields(node, path, "address-space", "cpu-seconds", "open-files");
+        return new Config.Limits(
+                string(node.get("address-space"), path + ".address-space"),
+                integer(node.get("cpu-seconds"), path + ".cpu-seconds"),
+                integer(node.get("open-files"), path + ".open-files"));
+    }
+
+    static Config.TestFile testFile(JsonNode node, String path) throws JsonMappingException {
+        if (isNull(node)) {
+            return null;
+        }
+        fields(node, path, "type", "content", "prefix", "suffix", "size", "seed", "count");
+        return new Config.TestFile(
+                enumeration(node.get("type"), path + ".type", Config.FileType.class),
+                string(node.get("content"), path + ".content"),
+                string(node.get("prefix"), path + ".prefix"),
+                string(node.get("suffix"), path + ".suffix"),
+                string(node.get("size"), path + ".size"),
+                longValue(node.get("seed"), path + ".seed"),
+                longValue(node.get("count"), path + ".count"));
+    }
+
+    static Config.TestCase testCase(JsonNode node, String path) throws JsonMappingException {
+        if (isNull(node)) {
+            return null;
+        }
+        fields(node, path, "name", "variables", "steps");
+        return new Config.TestCase(
+                string(node.get("name"), path + ".name"),
+                map(node.get("variables"), path + ".variables", (value, p) -> untyped(value), Map.of()),
+                list(node.get("steps"), path + ".steps", ConfigBinder::step, null));
+    }
+
+    static Config.Step step(JsonNode node, String path) throws JsonMappingException {
+        if (isNull(node)) {
+            return null;
+        }
+        fields(node, path, "command", "stdin", "stdout", "stderr", "criteria", "rc", "stdout-fragments",
+                "stderr-fragments", "expect-lines", "reject-lines", "max-output", "stdin-script", "env", "cwd",
+                "limits", "profile-dump", "pipe", "concurrency");
+        String stdin = string(node.get("stdin"), path + ".stdin");
+        return new Config.Step(
+                commandLine(node.get("command"), path + ".command"),
+                stdin == null ? "" : stdin,
+                string(node.get("stdout"), path + ".stdout"),
+                string(node.get("stderr"), path + ".stderr"),
+                criteria(node.get("criteria"), path + ".criteria"),
+                integer(node.get("rc"), path + ".rc", 0),
+                fragments(node.get("stdout-fragments"), path + ".stdout-fragments"),
+                fragments(node.get("stderr-fragments"), path + ".stderr-fragments"),
+                list(node.get("expect-lines"), path + ".expect-lines", ConfigBinder::string, List.of()),
+                list(node.get("reject-lines"), path + ".reject-lines", ConfigBinder::string, List.of()),
+                string(node.get("max-output"), path + ".max-output"),
+                list(node.get("stdin-script"), path + ".stdin-script", ConfigBinder::stdinChunk, List.of()),
+                map(node.get("env"), path + ".env", ConfigBinder::string, Map.of()),
+                string(node.get("cwd"), path + ".cwd"),
+                limits(node.get("limits"), path + ".limits"),
+                string(node.get("profile-dump"), path + ".profile-dump"),
+                list(node.get("pipe"), path + ".pipe", ConfigBinder::step, List.of()),
+                integer(node.get("concurrency"), path + ".concurrency", 0));
+    }
+
+    static Config.StdinChunk stdinChunk(JsonNode node, String path) throws JsonMappingException {
+        if (isNull(node)) {
+            return null;
+        }
+        fields(node, path, "send", "delay", "wait-for", "timeout");
+        return new Config.StdinChunk(
+                string(node.get("send"), path + ".send"),
+                string(node.get("delay"), path + ".delay"),
+                string(node.get("wait-for"), path + ".wait-for"),
+                string(node.get("timeout"), path + ".timeout"));
+    }
+
+    static Config.MatchCriteria criteria(JsonNode node, String path) throws JsonMappingException {
+        if (isNull(node)) {
+            return null;
+        }
+        fields(node, path, "match", "whitespace", "charset");
+        String charset = string(node.get("charset"), path + ".charset");
+        try {
+            return new Config.MatchCriteria(
+                    enumeration(node.get("match"), path + ".match", Config.MatchType.class),
+                    enumeration(node.get("whitespace"), path + ".whitespace", Config.Whitespace.class),
+                    charset == null ? null : Charset.forName(charset));
+        } catch (IllegalArgumentException ex) {
+            throw fail("Unknown charset '%s' at '%s'", charset, path + ".charset");
+        }
+    }
+
+    static Config.Fragments fragments(JsonNode node, String path) throws JsonMappingException {
+        if (isNull(node)) {
+            return null;
+        }
+        fields(node, path, "required", "forbidden");
+        return new Config.Fragments(
+                list(node.get("required"), path + ".required", ConfigBinder::string, List.of()),
+                list(node.get("forbidden"), path + ".forbidden", ConfigBinder::string, List.of()));
+    }
+
+    // Same rules as Config.ArrayConverter: a string is split on spaces, a list is taken as is
+    static List<String> commandLine(JsonNode node, String path) throws JsonMappingException {
+        if (isNull(node)) {
+            return null;
+        }
+        if (node.isArray()) {
+            return list(node, path, ConfigBinder::string, null);
+        }
+        return new Config.ArrayConverter().convert(string(node, path));
+    }
+
+    private static void fields(JsonNode node, String path, String... names) throws JsonMappingException {
+        if (!node.isObject()) {
+            throw fail("Expecting a mapping at '%s'", path);
+        }
+        Set<String> known = Set.of(names);
+        for (Iterator<String> it = node.fieldNames(); it.hasNext(); ) {
+            String name = it.next();
+            if (!known.contains(name)) {
+                throw fail("Unrecognized field '%s' at '%s' (known fields: %s)", name, path, String.join(", ", names));
+            }
+        }
+    }
+
+    private static <T> Map<String,T> map(JsonNode node, String path, Binder<T> binder, Map<String,T> absent)
+            throws JsonMappingException {
+        if (isNull(node)) {
+            return absent;
+        }
+        if (!node.isObject()) {
+            throw fail("Expecting a mapping at '%s'", path);
+        }
+        Map<String,T> map = new LinkedHashMap<>();
+        for (Iterator<Map.Entry<String,JsonNode>> it = node.fields(); it.hasNext(); ) {
+            Map.Entry<String,JsonNode> entry = it.next();
+            String prefix = path.isEmpty() ? "" : path + ".";
+            map.put(entry.getKey(), binder.bind(entry.getValue(), prefix + entry.getKey()));
+        }
+        return map;
+    }
+
+    private static <T> List<T> list(JsonNode node, String path, Binder<T> binder, List<T> absent)
+            throws JsonMappingException {
+        if (isNull(node)) {
+            return absent;
+        }
+        if (!node.isArray()) {
+            throw fail("Expecting a list at '%s'", path);
+        }
+        List<T> list = new ArrayList<>();
+        for (int i = 0; i < node.size(); i++) {
+            list.add(binder.bind(node.get(i), String.format("%s[%d]", path, i)));
+        }
+        return list;
+    }
+
+    private static String string(JsonNode node, String path) throws JsonMappingException {
+        if (isNull(node)) {
+            return null;
+        }
+        if (!node.isValueNode()) {
+            throw fail("Expecting a single value at '%s'", path);
+        }
+        return node.asText();
+    }
+
+    private static Integer integer(JsonNode node, String path) throws JsonMappingException {
+        if (isNull(node)) {
+            return null;
+        }
+        if (value(node).isIntegralNumber() && value(node).canConvertToInt()) {
+            return value(node).intValue();
+        }
+        try {
+            return Integer.parseInt(string(node, path).trim());
+        } catch (NumberFormatException ex) {
+            throw fail("Expecting a whole number at '%s' but got '%s'", path, node.asText());
+        }
+    }
+
+    private static int integer(JsonNode node, String path, int absent) throws JsonMappingException {
+        Integer value = integer(node, path);
+        return value == null ? absent : value;
+    }
+
+    private static Long longValue(JsonNode node, String path) throws JsonMappingException {
+        if (isNull(node)) {
+            return null;
+        }
+        if (value(node).isIntegralNumber() && value(node).canConvertToLong()) {
+            return value(node).longValue();
+        }
+        try {
+            return Long.parseLong(string(node, path).trim());
+        } catch (NumberFormatException ex) {
+            throw fail("Expecting a whole number at '%s' but got '%s'", path, node.asText());
+        }
+    }
+
+    private static boolean bool(JsonNode node, String path) throws JsonMappingException {
+        if (isNull(node)) {
+            return false;
+        }
+        if (value(node).isBoolean()) {
+            return value(node).booleanValue();
+        }
+        return switch (string(node, path).trim()) {
+            case "true" -> true;
+            case "false" -> false;
+            default -> throw fail("Expecting true or false at '%s' but got '%s'", path, node.asText());
+        };
+    }
+
+    private static <E extends Enum<E>> E enumeration(JsonNode node, String path, Class<E> type)
+            throws JsonMappingException {
+        String value = string(node, path);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, value);
+        } catch (IllegalArgumentException ex) {
+            throw fail("Unknown value '%s' at '%s' (expecting one of %s)", value, path,
+                    Arrays.toString(type.getEnumConstants()));
+        }
+    }
+
+    // Plain values the way untyped data binding produces them: strings, numbers, booleans, lists and maps
+    private static Object untyped(JsonNode node) {
+        node = value(node);
+        if (isNull(node)) {
+            return null;
+        } else if (node.isArray()) {
+            List<Object> list = new ArrayList<>();
+            node.forEach(element -> list.add(untyped(element)));
+            return list;
+        } else if (node.isObject()) {
+            Map<String,Object> map = new LinkedHashMap<>();
+            node.fields().forEachRemaining(entry -> map.put(entry.getKey(), untyped(entry.getValue())));
+            return map;
+        } else if (node.isNumber()) {
+            return node.numberValue();
+        } else if (node.isBoolean()) {
+            return node.booleanValue();
+        }
+        return node.asText();
+    }
+
+    private static boolean isNull(JsonNode node) {
+        return node == null || node.isNull() || node.isMissingNode();
+    }
+
+    private static JsonMappingException fail(String format, Object... args) {
+        return JsonMappingException.from((JsonParser) null, String.format(format, args));
+    }
+}
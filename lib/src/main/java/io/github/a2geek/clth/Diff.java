@@ -0,0 +1,215 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import com.github.difflib.text.DiffRow;
+import com.github.difflib.text.DiffRowGenerator;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Side-by-side line diff with limits. Common leading and trailing lines are stripped before the
+ * (quadratic-ish) diff runs, unchanged runs are collapsed to a few lines of context, and anything
+ * over the size threshold gets a positional summary instead of a real diff.
+ */
+public class Diff {
+    private static final String SUMMARY_PREFIX = "Output too large to diff";
+    private static final Map<DiffRow.Tag,String> TAGS = Map.of(
+            DiffRow.Tag.EQUAL, "=",
+            DiffRow.Tag.CHANGE, "!",
+            DiffRow.Tag.DELETE, "-",
+            DiffRow.Tag.INSERT, "+"
+        );
+
+    /**
+     * @param context lines of unchanged context shown around each change
+     * @param maxRows rows rendered before the rest is elided
+     * @param maxWidth column width cap; longer lines are truncated
+     * @param maxDiffLines changed lines (expected + actual) above which only a summary is produced
+     * @param summaryDifferences number of differing lines listed in a summary
+     */
+    public record Limits(int context, int maxRows, int maxWidth, int maxDiffLines, int summaryDifferences) {
+        public static final Limits DEFAULT = new Limits(5, 200, 120, 10_000, 10);
+        public static final Limits UNLIMITED = new Limits(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+                Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    // lineNumber is the 1-based expected line (or actual line for inserts), used to label skipped regions
+    private record Row(DiffRow.Tag tag, String oldLine, String newLine, int lineNumber) {
+        boolean changed() {
+            return tag != DiffRow.Tag.EQUAL;
+        }
+    }
+
+    public static String render(String expected, String actual, Limits limits) {
+        Events.DiffRender event = new Events.DiffRender();
+        event.begin();
+        String diff = renderLines(expected, actual, limits);
+        if (event.shouldCommit()) {
+            event.expectedChars = expected.length();
+            event.actualChars = actual.length();
+            event.summarized = diff.startsWith(SUMMARY_PREFIX);
+            event.commit();
+        }
+        return diff;
+    }
+
+    private static String renderLines(String expected, String actual, Limits limits) {
+        List<String> oldLines = expected.lines().toList();
+        List<String> newLines = actual.lines().toList();
+
+        // Locate the first and last difference without running the diff algorithm
+        int common = Math.min(oldLines.size(), newLines.size());
+        int prefix = 0;
+        while (prefix < common && oldLines.get(prefix).equals(newLines.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < common - prefix
+                && oldLines.get(oldLines.size() - 1 - suffix).equals(newLines.get(newLines.size() - 1 - suffix))) {
+            suffix++;
+        }
+        int oldEnd = oldLines.size() - suffix;
+        int newEnd = newLines.size() - suffix;
+
+        if ((long) (oldEnd - prefix) + (newEnd - prefix) > limits.maxDiffLines()) {
+            return summary(oldLines, newLines, prefix, limits);
+        }
+
+        List<Row> rows = new ArrayList<>();
+        int context = Math.min(limits.context(), prefix);
+        for (int i = prefix - context; i < prefix; i++) {
+            rows.add(new Row(DiffRow.Tag.EQUAL, oldLines.get(i), newLines.get(i), i + 1));
+        }
+        DiffRowGenerator generator = DiffRowGenerator.create().build();
+        int lineNumber = prefix;
+        for (DiffRow row : generator.generateDiffRows(oldLines.subList(prefix, oldEnd), newLines.subList(prefix, newEnd))) {
+            if (row.getTag() != DiffRow.Tag.INSERT) {
+                lineNumber++;
+            }
+            rows.add(new Row(row.getTag(), row.getOldLine(), row.getNewLine(), Math.max(lineNumber, 1)));
+        }
+        for (int i = 0; i < suffix; i++) {
+            rows.add(new Row(DiffRow.Tag.EQUAL, oldLines.get(oldEnd + i), newLines.get(newEnd + i), oldEnd + i + 1));
+        }
+        return format(collapse(rows, limits.context()), limits, prefix > context);
+    }
+
+    // Keep rows within 'context' of a change; null marks a skipped region
+    private static List<Row> collapse(List<Row> rows, int context) {
+        if (rows.stream().noneMatch(Row::changed)) {
+            return rows;
+        }
+        int[] distance = new int[rows.size()];
+        int last = -1;
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).changed()) {
+                last = i;
+            }
+            distance[i] = last == -1 ? Integer.MAX_VALUE : i - last;
+        }
+        last = -1;
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            if (rows.get(i).changed()) {
+                last = i;
+            }
+            if (last != -1) {
+                distance[i] = Math.min(distance[i], last - i);
+            }
+        }
+        List<Row> kept = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (distance[i] <= context) {
+                kept.add(rows.get(i));
+            } else if (kept.isEmpty() || kept.getLast() != null) {
+                kept.add(null);
+            }
+        }
+        return kept;
+    }
+
+    private static String format(List<Row> rows, Limits limits, boolean leadingGap) {
+        StringWriter sw = new StringWriter();
+        PrintWriter pw = new PrintWriter(sw);
+        List<Row> shown = rows.size() > limits.maxRows() ? rows.subList(0, limits.maxRows()) : rows;
+        int oldSize = Math.min(limits.maxWidth(), shown.stream().filter(r -> r != null)
+                .mapToInt(r -> r.oldLine().length()).max().orElse(0));
+        int newSize = Math.min(limits.maxWidth(), shown.stream().filter(r -> r != null)
+                .mapToInt(r -> r.newLine().length()).max().orElse(0));
+        final String fmt;
+        // Note we assume only one of these might be 0
+        if (oldSize == 0 && newSize == 0) {
+            fmt = "%s | %2$s | %3$s |\n";
+        }
+        else if (oldSize == 0) {
+            fmt = String.format("%%s |          | %%3$-%1$d.%1$ds |\n", newSize);
+        }
+        else if (newSize == 0) {
+            fmt = String.format("%%s | %%2$-%1$d.%1$ds |          |\n", oldSize);
+        }
+        else {
+            fmt = String.format("%%s | %%-%1$d.%1$ds | %%-%2$d.%2$ds |\n", oldSize, newSize);
+        }
+        boolean gap = leadingGap;
+        for (Row row : shown) {
+            if (row == null) {
+                gap = true;
+                continue;
+            }
+            if (gap) {
+                pw.printf("... (line %d)\n", row.lineNumber());
+                gap = false;
+            }
+            pw.printf(fmt, TAGS.get(row.tag()), row.oldLine(), row.newLine());
+        }
+        if (shown.size() < rows.size()) {
+            pw.printf("... (%d more rows not shown)\n", rows.size() - shown.size());
+        }
+        else if (gap) {
+            pw.println("...");
+        }
+        return sw.toString();
+    }
+
+    private static String summary(List<String> oldLines, List<String> newLines, int firstDifference, Limits limits) {
+        StringWriter sw = new StringWriter();
+        PrintWriter pw = new PrintWriter(sw);
+        pw.printf("%s: expected %d lines, actual %d lines; first difference at line %d\n", SUMMARY_PREFIX,
+                oldLines.size(), newLines.size(), firstDifference + 1);
+        int shown = 0;
+        int max = Math.max(oldLines.size(), newLines.size());
+        for (int i = firstDifference; i < max && shown < limits.summaryDifferences(); i++) {
+            String oldLine = i < oldLines.size() ? oldLines.get(i) : "";
+            String newLine = i < newLines.size() ? newLines.get(i) : "";
+            if (i >= oldLines.size() || i >= newLines.size() || !oldLine.equals(newLine)) {
+                pw.printf("! %d | %s | %s |\n", i + 1, truncate(oldLine, limits.maxWidth()),
+                        truncate(newLine, limits.maxWidth()));
+                shown++;
+            }
+        }
+        return sw.toString();
+    }
+
+    private static String truncate(String line, int width) {
+        return line.length() > width ? line.substring(0, width) : line;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-suite durations (in milliseconds) recorded from previous runs. Stored as a simple
+ * properties file keyed by {@link TestSuite#id()}.
+ */
+public class DurationStats {
+    private final Map<String,Long> durations = new ConcurrentHashMap<>();
+
+    public static DurationStats load(Path path) throws IOException {
+        DurationStats stats = new DurationStats();
+        if (Files.exists(path)) {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(path)) {
+                properties.load(reader);
+            }
+            properties.forEach((k, v) -> {
+                try {
+                    stats.durations.put(k.toString(), Long.parseLong(v.toString()));
+                } catch (NumberFormatException e) {
+                    // Skip anything we don't understand; it gets rewritten on save
+                }
+            });
+        }
+        return stats;
+    }
+
+    public void save(Path path) throws IOException {
+        Properties properties = new Properties();
+        durations.forEach((k, v) -> properties.setProperty(k, v.toString()));
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            properties.store(writer, "clth suite durations (ms)");
+        }
+    }
+
+    public void record(TestSuite testSuite, Duration duration) {
+        durations.put(testSuite.id(), duration.toMillis());
+    }
+
+    public void merge(DurationStats other) {
+        durations.putAll(other.durations);
+    }
+
+    public OptionalLong lookup(TestSuite testSuite) {
+        Long millis = durations.get(testSuite.id());
+        return millis == null ? OptionalLong.empty() : OptionalLong.of(millis);
+    }
+
+    public long averageMillis() {
+        return (long) durations.values().stream().mapToLong(Long::longValue).average().orElse(0);
+    }
+
+    public boolean isEmpty() {
+        return durations.isEmpty();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Flight Recorder events for the harness phases, so a recording shows how much of a run is spent in
+ * the harness itself versus the code under test. They cost next to nothing unless recorded; enable
+ * them with {@code --jfr} or any JFR recording (for instance {@code -XX:StartFlightRecording} on a
+ * JUnit run).
+ */
+public class Events {
+    public static final List<Class<? extends Event>> ALL = List.of(ConfigLoad.class, SuiteExpand.class,
+            StepExecute.class, OutputMatch.class, DiffRender.class);
+
+    @Name("io.github.a2geek.clth.ConfigLoad")
+    @Label("Config Load")
+    @Category("Command Line Test Harness")
+    @Description("Parsing a YAML test configuration")
+    public static class ConfigLoad extends Event {
+        @Label("Document Size") @DataAmount
+        public long documentSize;
+        @Label("Test Cases")
+        public int testCases;
+    }
+
+    @Name("io.github.a2geek.clth.SuiteExpand")
+    @Label("Suite Expand")
+    @Category("Command Line Test Harness")
+    @Description("Expanding test cases and their variables into test suites")
+    public static class SuiteExpand extends Event {
+        @Label("Test Cases")
+        public int testCases;
+        @Label("Suites")
+        public int suites;
+    }
+
+    @Name("io.github.a2geek.clth.StepExecute")
+    @Label("Step Execute")
+    @Category("Command Line Test Harness")
+    @Description("Running the command for one step")
+    public static class StepExecute extends Event {
+        @Label("Test Name")
+        public String testName;
+        @Label("Variables")
+        public String variables;
+        @Label("Step")
+        public int step;
+        @Label("Command")
+        public String command;
+        @Label("Return Code")
+        public int returnCode;
+        @Label("Stdout Size") @DataAmount
+        public long stdoutSize;
+        @Label("Stderr Size") @DataAmount
+        public long stderrSize;
+    }
+
+    @Name("io.github.a2geek.clth.OutputMatch")
+    @Label("Output Match")
+    @Category("Command Line Test Harness")
+    @Description("Comparing captured output with the expected output")
+    public static class OutputMatch extends Event {
+        @Label("Test Name")
+        public String testName;
+        @Label("Variables")
+        public String variables;
+        @Label("Step")
+        public int step;
+        @Label("Stream")
+        public String stream;
+        @Label("Expected Size") @DataAmount
+        public long expectedSize;
+        @Label("Actual Size") @DataAmount
+        public long actualSize;
+        @Label("Matched")
+        public boolean matched;
+    }
+
+    @Name("io.github.a2geek.clth.Diff")
+    @Label("Diff")
+    @Category("Command Line Test Harness")
+    @Description("Rendering a diff for mismatched output")
+    public static class DiffRender extends Event {
+        @Label("Expected Size")
+        public long expectedChars;
+        @Label("Actual Size")
+        public long actualChars;
+        @Label("Summarized")
+        public boolean summarized;
+    }
+
+    static String variables(TestSuite testSuite) {
+        return new TreeMap<>(testSuite.variables()).toString();
+    }
+}
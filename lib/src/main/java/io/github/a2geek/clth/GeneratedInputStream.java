@@ -0,0 +1,155 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.SplittableRandom;
+
+/**
+ * Produces a fixed amount of data on demand, so very large inputs never exist in memory or on disk.
+ * Random data is reproducible for a given seed.
+ */
+public class GeneratedInputStream extends InputStream {
+    private final long size;
+    private final Filler filler;
+    private long position;
+
+    private GeneratedInputStream(long size, Filler filler) {
+        this.size = size;
+        this.filler = filler;
+    }
+
+    public static GeneratedInputStream random(long size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        return new GeneratedInputStream(size, new Filler() {
+            private long bits;
+            private int available;
+            @Override
+            public void fill(byte[] b, int off, int len) {
+                for (int i = off; i < off + len; i++) {
+                    if (available == 0) {
+                        bits = random.nextLong();
+                        available = 8;
+                    }
+                    b[i] = (byte) bits;
+                    bits >>>= 8;
+                    available--;
+                }
+            }
+        });
+    }
+
+    public static GeneratedInputStream pattern(long size, byte[] pattern) {
+        if (pattern.length == 0) {
+            throw new IllegalArgumentException("Pattern must not be empty");
+        }
+        return new GeneratedInputStream(size, new Filler() {
+            private int index;
+            @Override
+            public void fill(byte[] b, int off, int len) {
+                while (len > 0) {
+                    int n = Math.min(len, pattern.length - index);
+                    System.arraycopy(pattern, index, b, off, n);
+                    index = (index + n) % pattern.length;
+                    off += n;
+                    len -= n;
+                }
+            }
+        });
+    }
+
+    /** Lines from a template where "{n}" is replaced by the 1-based line number. */
+    public static InputStream lines(String template, long count, Charset charset) {
+        return new InputStream() {
+            private long number = 0;
+            private byte[] line = new byte[0];
+            private int index = 0;
+
+            @Override
+            public int read() {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                int total = 0;
+                while (total < len) {
+                    if (index == line.length) {
+                        if (number == count) {
+                            break;
+                        }
+                        number++;
+                        line = (template.replace("{n}", Long.toString(number)) + "\n").getBytes(charset);
+                        index = 0;
+                    }
+                    int n = Math.min(len - total, line.length - index);
+                    System.arraycopy(line, index, b, off + total, n);
+                    index += n;
+                    total += n;
+                }
+                return total == 0 && len > 0 ? -1 : total;
+            }
+        };
+    }
+
+    /** Parses "generate:random:<size>:<seed>" or "generate:pattern:<size>:<text>". */
+    public static GeneratedInputStream parse(String value, Charset charset) {
+        String[] parts = value.split(":", 4);
+        if (parts.length != 4 || !"generate".equals(parts[0])) {
+            String msg = String.format("Expecting 'generate:<type>:<size>:<value>' but got '%s'", value);
+            throw new IllegalArgumentException(msg);
+        }
+        long size = Config.parseSize(parts[2]);
+        return switch (parts[1]) {
+            case "random" -> random(size, Long.parseLong(parts[3].trim()));
+            case "pattern" -> pattern(size, parts[3].getBytes(charset));
+            default -> {
+                String msg = String.format("Unknown generator '%s'", parts[1]);
+                throw new IllegalArgumentException(msg);
+            }
+        };
+    }
+
+    @Override
+    public int read() {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (position >= size) {
+            return -1;
+        }
+        int n = (int) Math.min(len, size - position);
+        filler.fill(b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, size - position);
+    }
+
+    private interface Filler {
+        void fill(byte[] b, int off, int len);
+    }
+}
@@ -31,7 +31,20 @@ import static com.ginsberg.junit.exit.assertions.SystemExitAssertion.assertThatC
 import static com.ginsberg.junit.exit.assertions.SystemExitAssertion.assertThatDoesNotCallSystemExit;
 
 public class JUnitHelper {
+    // System.in/out/err are global, so in-process runs (such as concurrent instances) take turns
+    private static final Object STREAMS = new Object();
+
     public static int execute(Config.Command command, List<String> parameters, InputStream stdin, OutputStream stdout, OutputStream stderr) {
+        if (command.hasEnvironment()) {
+            throw new RuntimeException("'env', 'cwd' and 'limits' are only supported for executables");
+        }
+        synchronized (STREAMS) {
+            return executeInProcess(command, parameters, stdin, stdout, stderr);
+        }
+    }
+
+    private static int executeInProcess(Config.Command command, List<String> parameters, InputStream stdin,
+                                        OutputStream stdout, OutputStream stderr) {
         InputStream oldStdin = System.in;
         PrintStream oldStdout = System.out;
         PrintStream oldStderr = System.err;
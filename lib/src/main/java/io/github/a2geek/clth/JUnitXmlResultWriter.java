@@ -0,0 +1,149 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Writes JUnit-style XML. The closing tag is always on disk; each new suite is written over it and
+ * the closing tag is re-appended, so the file is well-formed after every suite.
+ */
+public class JUnitXmlResultWriter implements ResultWriter {
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<testsuites>\n";
+    private static final String FOOTER = "</testsuites>\n";
+
+    private final FileChannel channel;
+    private long end;
+
+    public JUnitXmlResultWriter(Path path) throws IOException {
+        this.channel = FileChannel.open(path, CREATE, WRITE, TRUNCATE_EXISTING);
+        writeFully(HEADER);
+        this.end = channel.position();
+        writeFully(FOOTER);
+    }
+
+    @Override
+    public synchronized void write(SuiteResult result) throws IOException {
+        channel.position(end);
+        writeFully(toXml(result));
+        end = channel.position();
+        writeFully(FOOTER);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void writeFully(String text) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    public static String toXml(SuiteResult result) {
+        StringBuilder sb = new StringBuilder();
+        String suiteName = result.testSuite().id();
+        long failures = result.steps().stream().filter(s -> !s.passed() && s.returnCode() != null).count();
+        long errors = result.steps().stream().filter(s -> !s.passed() && s.returnCode() == null).count();
+        sb.append(String.format("  <testsuite name=\"%s\" tests=\"%d\" failures=\"%d\" errors=\"%d\" time=\"%s\">\n",
+                escape(suiteName), result.steps().size(), failures, errors, seconds(result.duration().toNanos())));
+        Map<String,String> variables = new TreeMap<>(result.testSuite().variables());
+        if (!variables.isEmpty()) {
+            sb.append("    <properties>\n");
+            variables.forEach((k, v) -> sb.append(String.format("      <property name=\"%s\" value=\"%s\"/>\n",
+                    escape(k), escape(v))));
+            sb.append("    </properties>\n");
+        }
+        for (SuiteResult.StepResult step : result.steps()) {
+            sb.append(String.format("    <testcase classname=\"%s\" name=\"%s\" time=\"%s\"",
+                    escape(suiteName), escape(step.number() + ": " + step.command()), seconds(step.duration().toNanos())));
+            if (step.passed()) {
+                sb.append("/>\n");
+                continue;
+            }
+            sb.append(">\n");
+            // Steps that never produced a return code blew up rather than mismatched
+            String tag = step.returnCode() == null ? "error" : "failure";
+            sb.append(String.format("      <%s message=\"%s\">", tag, escape(String.join("; ", step.errors()))));
+            if (step.diff() != null) {
+                sb.append(escape(step.diff()));
+            }
+            sb.append(String.format("</%s>\n", tag));
+            sb.append("    </testcase>\n");
+        }
+        sb.append("  </testsuite>\n");
+        return sb.toString();
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000_000.0);
+    }
+
+    public static String escape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '&' -> sb.append("&amp;");
+                case '<' -> sb.append("&lt;");
+                case '>' -> sb.append("&gt;");
+                case '"' -> sb.append("&quot;");
+                case '\'' -> sb.append("&apos;");
+                case '\t', '\n', '\r' -> sb.append(ch);
+                // Other control characters are not legal in XML 1.0 at all
+                default -> sb.append(ch < 0x20 || ch == 0xfffe || ch == 0xffff ? '\ufffd' : ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    // Combine the <testsuite> elements from each shard's file into one document
+    public static void merge(List<Path> inputs, Path output) throws IOException {
+        StringBuilder sb = new StringBuilder(HEADER);
+        for (Path input : inputs) {
+            String document = Files.readString(input);
+            int start = document.indexOf("<testsuites>");
+            int stop = document.lastIndexOf(FOOTER.trim());
+            if (start == -1 || stop == -1) {
+                String msg = String.format("'%s' does not look like a clth JUnit XML file", input);
+                throw new IOException(msg);
+            }
+            String suites = document.substring(start + "<testsuites>".length(), stop).replaceFirst("^\\R", "");
+            sb.append(suites);
+            // Keep each <testsuite> starting on its own line
+            if (sb.charAt(sb.length() - 1) != '\n') {
+                sb.append('\n');
+            }
+        }
+        sb.append(FOOTER);
+        Files.writeString(output, sb.toString(), UTF_8);
+    }
+}
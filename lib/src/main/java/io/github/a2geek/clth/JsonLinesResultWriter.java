@@ -0,0 +1,126 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/** Writes one JSON object per suite, one suite per line. */
+public class JsonLinesResultWriter implements ResultWriter {
+    private final JsonGenerator generator;
+
+    public JsonLinesResultWriter(Path path) throws IOException {
+        this.generator = new JsonFactory().createGenerator(Files.newBufferedWriter(path, UTF_8));
+        this.generator.setRootValueSeparator(new SerializedString(""));
+    }
+
+    @Override
+    public synchronized void write(SuiteResult result) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("name", result.testSuite().testName());
+        generator.writeStringField("id", result.testSuite().id());
+        generator.writeObjectFieldStart("variables");
+        for (Map.Entry<String,String> entry : new TreeMap<>(result.testSuite().variables()).entrySet()) {
+            generator.writeStringField(entry.getKey(), entry.getValue());
+        }
+        generator.writeEndObject();
+        generator.writeBooleanField("passed", result.passed());
+        generator.writeNumberField("durationMillis", result.duration().toMillis());
+        generator.writeArrayFieldStart("steps");
+        for (SuiteResult.StepResult step : result.steps()) {
+            generator.writeStartObject();
+            generator.writeNumberField("step", step.number());
+            generator.writeStringField("command", step.command());
+            generator.writeNumberField("expectedReturnCode", step.expectedReturnCode());
+            if (step.returnCode() != null) {
+                generator.writeNumberField("returnCode", step.returnCode());
+            }
+            generator.writeNumberField("durationMillis", step.duration().toMillis());
+            generator.writeBooleanField("passed", step.passed());
+            generator.writeArrayFieldStart("errors");
+            for (String error : step.errors()) {
+                generator.writeString(error);
+            }
+            generator.writeEndArray();
+            if (step.diff() != null) {
+                generator.writeStringField("diff", step.diff());
+            }
+            if (step.load() != null) {
+                LoadSummary load = step.load();
+                generator.writeObjectFieldStart("load");
+                generator.writeNumberField("instances", load.instances());
+                generator.writeNumberField("wallMillis", load.wall().toMillis());
+                generator.writeNumberField("throughput", load.throughput());
+                generator.writeNumberField("minMillis", load.percentile(0).toMillis());
+                generator.writeNumberField("p50Millis", load.percentile(50).toMillis());
+                generator.writeNumberField("p95Millis", load.percentile(95).toMillis());
+                generator.writeNumberField("maxMillis", load.percentile(100).toMillis());
+                generator.writeEndObject();
+            }
+            if (step.profile() != null) {
+                ProcessProfile.Summary profile = step.profile();
+                generator.writeObjectFieldStart("profile");
+                generator.writeNumberField("samples", profile.samples());
+                generator.writeNumberField("peakRssKb", profile.peakRssKb());
+                generator.writeNumberField("peakThreads", profile.peakThreads());
+                generator.writeNumberField("userMillis", profile.userMillis());
+                generator.writeNumberField("sysMillis", profile.sysMillis());
+                generator.writeNumberField("voluntarySwitches", profile.voluntarySwitches());
+                generator.writeNumberField("involuntarySwitches", profile.involuntarySwitches());
+                generator.writeNumberField("readBytes", profile.readBytes());
+                generator.writeNumberField("writeBytes", profile.writeBytes());
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        generator.close();
+    }
+
+    // JSON lines concatenate cleanly; just skip any partial line left by a killed run
+    public static void merge(List<Path> inputs, Path output) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(output, UTF_8)) {
+            for (Path input : inputs) {
+                for (String line : Files.readAllLines(input, UTF_8)) {
+                    if (line.startsWith("{") && line.endsWith("}")) {
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                }
+            }
+        }
+    }
+}
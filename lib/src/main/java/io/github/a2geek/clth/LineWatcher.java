@@ -0,0 +1,132 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Passes output through to a delegate while checking it line by line. Expected patterns must be
+ * found in order (other lines in between are fine); any line matching a rejected pattern fails
+ * immediately. Once the outcome is known a {@link StopProcessException} is thrown so the runner
+ * can stop the process instead of waiting for it to exit.
+ */
+public class LineWatcher extends OutputStream {
+    public enum State { WATCHING, SATISFIED, REJECTED }
+
+    private final OutputStream delegate;
+    private final List<Pattern> expected;
+    private final List<Pattern> rejected;
+    private final Charset charset;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+    private int next = 0;
+    private String rejectedLine;
+    private StopProcessException stop;
+    private volatile State state = State.WATCHING;
+
+    public LineWatcher(OutputStream delegate, List<String> expected, List<String> rejected, Charset charset) {
+        this.delegate = delegate;
+        this.expected = expected.stream().map(Pattern::compile).toList();
+        this.rejected = rejected.stream().map(Pattern::compile).toList();
+        this.charset = charset;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        delegate.write(b, off, len);
+        if (state != State.WATCHING) {
+            return;
+        }
+        int start = off;
+        for (int i = off; i < off + len; i++) {
+            if (b[i] == '\n') {
+                line.write(b, start, i - start);
+                start = i + 1;
+                if (checkLine()) {
+                    stop = new StopProcessException(String.format("Line expectations %s", state));
+                    throw stop;
+                }
+            }
+        }
+        line.write(b, start, off + len - start);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    /** Check any trailing partial line once the process has finished. */
+    public synchronized void finish() {
+        if (state == State.WATCHING && line.size() > 0) {
+            checkLine();
+        }
+    }
+
+    // Returns true when the outcome has just been decided
+    private boolean checkLine() {
+        String text = line.toString(charset);
+        line.reset();
+        if (text.endsWith("\r")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        for (Pattern pattern : rejected) {
+            if (pattern.matcher(text).find()) {
+                rejectedLine = text;
+                state = State.REJECTED;
+                return true;
+            }
+        }
+        if (next < expected.size() && expected.get(next).matcher(text).find()) {
+            next++;
+            if (next == expected.size()) {
+                state = State.SATISFIED;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    /** True only when the runner stopped a process that was still running once the outcome was known. */
+    public synchronized boolean processStopped() {
+        return stop != null && stop.isProcessStopped();
+    }
+
+    public void addErrors(String name, List<String> errors) {
+        if (state == State.REJECTED) {
+            errors.add(String.format("'%s' has rejected line '%s'", name, rejectedLine));
+        }
+        else if (next < expected.size()) {
+            errors.add(String.format("'%s' never matched line %d of expect-lines /%s/", name, next + 1,
+                    expected.get(next).pattern()));
+        }
+    }
+}
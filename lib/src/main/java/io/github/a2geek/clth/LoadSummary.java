@@ -0,0 +1,52 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Aggregate timing for a step run as several concurrent instances. Latencies are per instance
+ * (in instance order); wall is from the common start until the last instance finished.
+ */
+public record LoadSummary(Duration wall, List<Duration> latencies) {
+    public int instances() {
+        return latencies.size();
+    }
+
+    public double throughput() {
+        return wall.isZero() ? 0 : instances() * 1_000_000_000.0 / wall.toNanos();
+    }
+
+    // Nearest-rank percentile, so p100 is the slowest instance
+    public Duration percentile(double percent) {
+        if (latencies.isEmpty()) {
+            return Duration.ZERO;
+        }
+        List<Duration> sorted = latencies.stream().sorted().toList();
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.size());
+        return sorted.get(Math.clamp(rank - 1, 0, sorted.size() - 1));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d instances in %d ms: %.1f runs/s, latency min %d / p50 %d / p95 %d / max %d ms",
+                instances(), wall.toMillis(), throughput(), percentile(0).toMillis(), percentile(50).toMillis(),
+                percentile(95).toMillis(), percentile(100).toMillis());
+    }
+}
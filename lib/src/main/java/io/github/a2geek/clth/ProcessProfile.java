@@ -0,0 +1,165 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Samples a running process through Linux /proc (status, stat and io) at a fixed interval. Peak
+ * RSS comes from the kernel's high-water mark, so short spikes between samples are not missed;
+ * CPU, context switch and I/O counters are as of the last sample taken before the process exited.
+ * On systems without /proc nothing is recorded.
+ */
+public class ProcessProfile {
+    // USER_HZ is 100 on practically every Linux build and cannot be queried without native code
+    private static final long TICKS_PER_SECOND = 100;
+    public static final Duration DEFAULT_INTERVAL = Duration.ofMillis(10);
+
+    public record Sample(long elapsedMillis, long rssKb, long peakRssKb, int threads, long userMillis, long sysMillis,
+                        long voluntarySwitches, long involuntarySwitches, long readBytes, long writeBytes) {}
+
+    public record Summary(int samples, long peakRssKb, int peakThreads, long userMillis, long sysMillis,
+                          long voluntarySwitches, long involuntarySwitches, long readBytes, long writeBytes) {
+        @Override
+        public String toString() {
+            return String.format("peak RSS %d kB, CPU user %d ms sys %d ms, threads %d, ctx switches %d/%d, " +
+                    "read %d B, written %d B (%d samples)", peakRssKb, userMillis, sysMillis, peakThreads,
+                    voluntarySwitches, involuntarySwitches, readBytes, writeBytes, samples);
+        }
+    }
+
+    private final Duration interval;
+    private final List<Sample> samples = new ArrayList<>();
+    private Thread thread;
+
+    public ProcessProfile(Duration interval) {
+        this.interval = interval;
+    }
+
+    public void start(long pid) {
+        final Path proc = Path.of("/proc", Long.toString(pid));
+        final long start = System.nanoTime();
+        thread = Thread.ofPlatform().daemon().name("clth-profile-" + pid).start(() -> {
+            while (true) {
+                Sample sample = sample(proc, Duration.ofNanos(System.nanoTime() - start).toMillis());
+                if (sample == null) {
+                    return;
+                }
+                synchronized (samples) {
+                    samples.add(sample);
+                }
+                try {
+                    Thread.sleep(interval);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+    }
+
+    public void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public List<Sample> samples() {
+        synchronized (samples) {
+            return List.copyOf(samples);
+        }
+    }
+
+    public Summary summary() {
+        List<Sample> list = samples();
+        if (list.isEmpty()) {
+            return null;
+        }
+        Sample last = list.getLast();
+        return new Summary(list.size(),
+                list.stream().mapToLong(s -> Math.max(s.rssKb(), s.peakRssKb())).max().orElse(0),
+                list.stream().mapToInt(Sample::threads).max().orElse(0),
+                last.userMillis(), last.sysMillis(), last.voluntarySwitches(), last.involuntarySwitches(),
+                last.readBytes(), last.writeBytes());
+    }
+
+    /** Time series as CSV, one row per sample. */
+    public void dump(Path path) {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(path))) {
+            writer.println("elapsed_ms,rss_kb,peak_rss_kb,threads,user_ms,sys_ms,voluntary_ctxt,nonvoluntary_ctxt,read_bytes,write_bytes");
+            for (Sample s : samples()) {
+                writer.printf("%d,%d,%d,%d,%d,%d,%d,%d,%d,%d%n", s.elapsedMillis(), s.rssKb(), s.peakRssKb(),
+                        s.threads(), s.userMillis(), s.sysMillis(), s.voluntarySwitches(), s.involuntarySwitches(),
+                        s.readBytes(), s.writeBytes());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Returns null once the process is gone
+    static Sample sample(Path proc, long elapsedMillis) {
+        try {
+            String status = Files.readString(proc.resolve("status"));
+            String stat = Files.readString(proc.resolve("stat"));
+            String io = "";
+            try {
+                io = Files.readString(proc.resolve("io"));
+            } catch (IOException e) {
+                // io is only readable by the owner (or with ptrace rights); leave those counters at zero
+            }
+            return parse(elapsedMillis, status, stat, io);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    static Sample parse(long elapsedMillis, String status, String stat, String io) {
+        // The command name in stat is in parentheses and may contain spaces, so count fields after the last ')'
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 2).trim().split("\\s+");
+        long utime = Long.parseLong(fields[11]);
+        long stime = Long.parseLong(fields[12]);
+        return new Sample(elapsedMillis,
+                field(status, "VmRSS:"), field(status, "VmHWM:"), (int) field(status, "Threads:"),
+                utime * 1000 / TICKS_PER_SECOND, stime * 1000 / TICKS_PER_SECOND,
+                field(status, "voluntary_ctxt_switches:"), field(status, "nonvoluntary_ctxt_switches:"),
+                field(io, "read_bytes:"), field(io, "write_bytes:"));
+    }
+
+    private static long field(String text, String name) {
+        for (String line : text.split("\n")) {
+            if (line.startsWith(name)) {
+                String value = line.substring(name.length()).trim();
+                int space = value.indexOf(' ');
+                return Long.parseLong(space == -1 ? value : value.substring(0, space));
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receives each suite result as soon as the suite finishes. Implementations write and flush
+ * per suite, so a run that is killed part way through still leaves usable output behind.
+ */
+public interface ResultWriter extends Closeable {
+    void write(SuiteResult result) throws IOException;
+}
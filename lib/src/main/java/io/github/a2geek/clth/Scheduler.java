@@ -0,0 +1,66 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+public class Scheduler {
+    /**
+     * Order suites longest-processing-time-first. Handing these to a pool of workers that each pull
+     * the next suite when idle gives the classic LPT packing. Unknown suites are estimated at the
+     * average duration; ties keep the original order.
+     */
+    public static List<TestSuite> longestFirst(Collection<TestSuite> testSuites, DurationStats stats) {
+        final long average = stats.averageMillis();
+        ToLongFunction<TestSuite> estimate = t -> stats.lookup(t).orElse(average);
+        List<TestSuite> ordered = new ArrayList<>(testSuites);
+        ordered.sort(Comparator.comparingLong(estimate).reversed());
+        return ordered;
+    }
+
+    /** Best possible wall time for the given durations: either the longest suite or a perfect split. */
+    public static long idealMakespan(Collection<Long> durations, int workers) {
+        long total = durations.stream().mapToLong(Long::longValue).sum();
+        long longest = durations.stream().mapToLong(Long::longValue).max().orElse(0);
+        return Math.max(longest, (total + workers - 1) / workers);
+    }
+
+    public record Report(int suites, int workers, long wallMillis, long busyMillis, long idealMillis) {
+        public double efficiency() {
+            return wallMillis == 0 ? 1.0 : (double) busyMillis / (wallMillis * workers);
+        }
+        public double idealEfficiency() {
+            return idealMillis == 0 ? 1.0 : (double) busyMillis / (idealMillis * workers);
+        }
+        @Override
+        public String toString() {
+            return String.format("Ran %d suites on %d workers in %d ms (busy %d ms): parallel efficiency %.1f%%, " +
+                    "ideal %.1f%% (%d ms)", suites, workers, wallMillis, busyMillis, efficiency() * 100,
+                    idealEfficiency() * 100, idealMillis);
+        }
+    }
+
+    public static Report report(Collection<Long> durations, int workers, long wallMillis) {
+        long busy = durations.stream().mapToLong(Long::longValue).sum();
+        return new Report(durations.size(), workers, wallMillis, busy, idealMakespan(durations, workers));
+    }
+}
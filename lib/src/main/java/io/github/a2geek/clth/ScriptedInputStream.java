@@ -0,0 +1,202 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Feeds stdin one chunk at a time. A chunk may first wait for a pattern to show up in the output
+ * (watched through {@link #monitor(OutputStream)}) and/or pause for a delay. Reads block while
+ * waiting, so the runner simply copies this stream to the process as usual.
+ */
+public class ScriptedInputStream extends InputStream {
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
+    @FunctionalInterface
+    public interface Opener {
+        InputStream open(String value) throws IOException;
+    }
+
+    private final List<Config.StdinChunk> chunks;
+    private final Opener opener;
+    private final Charset charset;
+    private final List<Pattern> waits = new ArrayList<>();
+    private final int[] waitIndex;
+    private final Object lock = new Object();
+    private int matched = 0;
+    private int next = 0;
+    private InputStream current;
+    private String failure;
+
+    public ScriptedInputStream(List<Config.StdinChunk> chunks, Charset charset, Opener opener) {
+        this.chunks = chunks;
+        this.opener = opener;
+        this.charset = charset;
+        this.waitIndex = new int[chunks.size()];
+        for (int i = 0; i < chunks.size(); i++) {
+            waitIndex[i] = -1;
+            if (chunks.get(i).waitFor() != null) {
+                waitIndex[i] = waits.size();
+                waits.add(Pattern.compile(chunks.get(i).waitFor()));
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        while (true) {
+            if (current != null) {
+                int n = current.read(b, off, len);
+                if (n != -1) {
+                    return n;
+                }
+                current.close();
+                current = null;
+            }
+            if (next >= chunks.size()) {
+                return -1;
+            }
+            int index = next++;
+            Config.StdinChunk chunk = chunks.get(index);
+            if (waitIndex[index] != -1) {
+                await(waitIndex[index], chunk);
+            }
+            if (chunk.delay() != null) {
+                sleep(Config.parseDuration(chunk.delay()));
+            }
+            current = chunk.send() == null ? InputStream.nullInputStream() : opener.open(chunk.send());
+        }
+    }
+
+    private void await(int ordinal, Config.StdinChunk chunk) throws IOException {
+        Duration timeout = chunk.timeout() == null ? DEFAULT_TIMEOUT : Config.parseDuration(chunk.timeout());
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (lock) {
+            while (matched <= ordinal) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    failure = String.format("Timed out after %s waiting for /%s/", timeout, chunk.waitFor());
+                    throw new IOException(failure);
+                }
+                try {
+                    lock.wait(Math.max(1, remaining / 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+        }
+    }
+
+    private static void sleep(Duration duration) throws IOException {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    /** Wait failure, if any; reported as a step error since the runner swallows stdin errors. */
+    public String failure() {
+        synchronized (lock) {
+            return failure;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * Passes output through while watching for the wait-for patterns in order. Prompts rarely end
+     * with a newline, so the partial line is checked as well.
+     */
+    public OutputStream monitor(OutputStream delegate) {
+        if (waits.isEmpty()) {
+            return delegate;
+        }
+        return new OutputStream() {
+            private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+            // Bytes of the current line already used by a match
+            private int consumed = 0;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                delegate.write(b, off, len);
+                synchronized (lock) {
+                    if (matched >= waits.size()) {
+                        return;
+                    }
+                    int start = off;
+                    for (int i = off; i < off + len; i++) {
+                        if (b[i] == '\n') {
+                            line.write(b, start, i - start);
+                            start = i + 1;
+                            check();
+                            line.reset();
+                            consumed = 0;
+                        }
+                    }
+                    line.write(b, start, off + len - start);
+                    check();
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                delegate.flush();
+            }
+
+            private void check() {
+                if (matched >= waits.size() || line.size() <= consumed) {
+                    return;
+                }
+                byte[] bytes = line.toByteArray();
+                String text = new String(bytes, consumed, bytes.length - consumed, charset);
+                if (waits.get(matched).matcher(text).find()) {
+                    matched++;
+                    consumed = bytes.length;
+                    lock.notifyAll();
+                }
+            }
+        };
+    }
+}
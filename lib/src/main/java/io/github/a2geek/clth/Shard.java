@@ -0,0 +1,83 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * One slice of a sharded run, where index is 1-based ("2/4" is the second of four shards).
+ * Every shard must see the same suites (and the same stats file) to agree on the partition.
+ */
+public record Shard(int index, int count) {
+    public Shard {
+        if (count < 1 || index < 1 || index > count) {
+            String msg = String.format("Invalid shard %d/%d", index, count);
+            throw new IllegalArgumentException(msg);
+        }
+    }
+
+    public static Shard parse(String value) {
+        String[] parts = value.split("/");
+        if (parts.length != 2) {
+            String msg = String.format("Expecting shard as 'i/N' but got '%s'", value);
+            throw new IllegalArgumentException(msg);
+        }
+        return new Shard(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+    }
+
+    public List<TestSuite> select(List<TestSuite> testSuites, DurationStats stats) {
+        if (stats.isEmpty()) {
+            return testSuites.stream()
+                    .filter(t -> Math.floorMod(hash(t.id()), count) == index - 1)
+                    .toList();
+        }
+        // Weighted: hand suites out longest-first to whichever shard has the least work so far
+        long[] load = new long[count];
+        Set<TestSuite> mine = Collections.newSetFromMap(new IdentityHashMap<>());
+        final long average = stats.averageMillis();
+        for (TestSuite testSuite : Scheduler.longestFirst(testSuites, stats)) {
+            int target = 0;
+            for (int i = 1; i < count; i++) {
+                if (load[i] < load[target]) {
+                    target = i;
+                }
+            }
+            load[target] += stats.lookup(testSuite).orElse(average);
+            if (target == index - 1) {
+                mine.add(testSuite);
+            }
+        }
+        return testSuites.stream().filter(mine::contains).toList();
+    }
+
+    // FNV-1a; String.hashCode would do, but this spreads similar names better
+    public static int hash(String value) {
+        int hash = 0x811c9dc5;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x01000193;
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d", index, count);
+    }
+}
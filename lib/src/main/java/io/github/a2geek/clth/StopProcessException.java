@@ -0,0 +1,42 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import java.io.IOException;
+
+/**
+ * Thrown by an output stream to tell the runner that the process under test should be stopped
+ * now (the expected output has been seen, or something went irrecoverably wrong). Runners that
+ * cannot stop the code under test may ignore it; a runner that does stop a running process says
+ * so with {@link #processStopped()}, since its exit code then means nothing.
+ */
+public class StopProcessException extends IOException {
+    private volatile boolean processStopped;
+
+    public StopProcessException(String message) {
+        super(message);
+    }
+
+    public void processStopped() {
+        processStopped = true;
+    }
+
+    public boolean isProcessStopped() {
+        return processStopped;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import java.time.Duration;
+import java.util.List;
+
+public record SuiteResult(TestSuite testSuite, List<StepResult> steps, Duration duration, Throwable failure) {
+    public boolean passed() {
+        return failure == null && steps.stream().allMatch(StepResult::passed);
+    }
+
+    public List<String> errors() {
+        return steps.stream().flatMap(s -> s.errors().stream()).toList();
+    }
+
+    // The return code is null when the step never got as far as running; profile is null unless sampled
+    // and load is null unless the step ran with 'concurrency'
+    public record StepResult(int number, String command, int expectedReturnCode, Integer returnCode,
+                             Duration duration, List<String> errors, String diff, ProcessProfile.Summary profile,
+                             LoadSummary load) {
+        public static StepResult failed(int number, String command, int expectedReturnCode, long startNanos, Throwable t) {
+            return new StepResult(number, command, expectedReturnCode, null,
+                    Duration.ofNanos(System.nanoTime() - startNanos), List.of(t.toString()), null, null, null);
+        }
+
+        public boolean passed() {
+            return errors.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Text with <code>${name}</code> references, parsed once into literal parts and names. Rendering
+ * appends them to a single builder, and text without references renders as itself. A literal
+ * <code>${</code> is written as <code>$${</code>.
+ */
+public final class Template {
+    private final String[] literals;
+    private final String[] names;
+    private final int literalLength;
+
+    private Template(List<String> literals, List<String> names) {
+        this.literals = literals.toArray(new String[0]);
+        this.names = names.toArray(new String[0]);
+        this.literalLength = literals.stream().mapToInt(String::length).sum();
+    }
+
+    public static boolean hasReferences(String text) {
+        return text.contains("${");
+    }
+
+    static Template parse(String text) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < text.length()) {
+            if (text.startsWith("$${", i)) {
+                literal.append("${");
+                i += 3;
+            } else if (text.startsWith("${", i)) {
+                int end = text.indexOf('}', i + 2);
+                if (end == -1) {
+                    String msg = String.format("Missing '}' after '${' in '%s'", text);
+                    throw new IllegalArgumentException(msg);
+                }
+                String name = text.substring(i + 2, end).trim();
+                if (name.isEmpty()) {
+                    String msg = String.format("Empty '${}' in '%s'", text);
+                    throw new IllegalArgumentException(msg);
+                }
+                literals.add(literal.toString());
+                names.add(name);
+                literal.setLength(0);
+                i = end + 1;
+            } else {
+                literal.append(text.charAt(i++));
+            }
+        }
+        // Constant text renders as the original string
+        literals.add(names.isEmpty() && literal.length() == text.length() ? text : literal.toString());
+        return new Template(literals, names);
+    }
+
+    public List<String> names() {
+        return List.of(names);
+    }
+
+    public String render(Function<String,String> resolver) {
+        if (names.length == 0) {
+            return literals[0];
+        }
+        StringBuilder text = new StringBuilder(literalLength + 16 * names.length);
+        for (int i = 0; i < names.length; i++) {
+            text.append(literals[i]).append(resolver.apply(names[i]));
+        }
+        return text.append(literals[names.length]).toString();
+    }
+
+    // Templates compare by content, so suites built from the same text are equal
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Template template
+                && Arrays.equals(literals, template.literals) && Arrays.equals(names, template.names);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(literals) + Arrays.hashCode(names);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(literals[0].replace("${", "$${"));
+        for (int i = 0; i < names.length; i++) {
+            text.append("${").append(names[i]).append('}').append(literals[i + 1].replace("${", "$${"));
+        }
+        return text.toString();
+    }
+}
@@ -17,82 +17,515 @@
  */
 package io.github.a2geek.clth;
 
-import com.github.difflib.text.DiffRow;
-import com.github.difflib.text.DiffRowGenerator;
-
 import java.io.*;
+import java.nio.charset.Charset;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 public class TestHarness {
     public static void run(TestSuite testSuite, TestRunner runner, Settings settings) {
-        Map<String,File> testCaseFiles = new HashMap<>();
+        SuiteResult result = execute(testSuite, runner, settings);
+        if (result.failure() instanceof RuntimeException ex) {
+            throw ex;
+        } else if (result.failure() instanceof Error err) {
+            throw err;
+        }
+        for (SuiteResult.StepResult step : result.steps()) {
+            if (!step.passed()) {
+                throw new RuntimeException("Errors encountered: " + step.errors());
+            }
+        }
+    }
+
+    // Runs every step until one fails, collecting results rather than throwing
+    public static SuiteResult execute(TestSuite testSuite, TestRunner runner, Settings settings) {
+        // Concurrent instances of a step may resolve file references at the same time
+        Map<String,File> testCaseFiles = new ConcurrentHashMap<>();
+        try {
+            return execute(testSuite, testCaseFiles, runner, settings);
+        } finally {
+            // Including files first referenced while a step ran
+            testCaseFiles.values().forEach(settings.filePreservation()::release);
+        }
+    }
+
+    private static SuiteResult execute(TestSuite testSuite, Map<String,File> testCaseFiles, TestRunner runner,
+                                       Settings settings) {
+        List<SuiteResult.StepResult> results = new ArrayList<>();
+        long suiteStart = System.nanoTime();
         settings.out.printf("Test '%s' %s\n", testSuite.testName(), testSuite.variables());
         for (int n=0; n<testSuite.steps().size(); n++) {
             Config.Step step = testSuite.steps().get(n);
+            List<Config.Step> stages = step.stages();
+            String commandLine = stages.stream()
+                    .map(stage -> stage.command() == null ? "" : String.join(" ", stage.command()))
+                    .collect(Collectors.joining(" | "));
+            long stepStart = System.nanoTime();
             try {
-                final String cmd = step.command().getFirst();
-                if (!testSuite.commands().containsKey(cmd)) {
-                    String msg = String.format("Expecting command named '%s' but it does not exist", cmd);
-                    throw new RuntimeException(msg);
-                }
-                Config.Command command = testSuite.commands().get(cmd);
+                validate(step);
+                List<Config.Command> commands = new ArrayList<>();
+                List<List<String>> parameters = new ArrayList<>();
+                List<String> display = new ArrayList<>();
+                for (Config.Step stage : stages) {
+                    final String cmd = stage.command().getFirst();
+                    commands.add(testSuite.commandFor(stage, settings, testCaseFiles));
 
-                // Setup variables
-                List<String> parameters = new ArrayList<>();
-                for (int i=1; i<step.command().size(); i++) {
-                    parameters.add(testSuite.evaluateAsArgument(step.command().get(i), testCaseFiles));
+                    // Setup variables
+                    List<String> stageParameters = new ArrayList<>();
+                    for (int i=1; i<stage.command().size(); i++) {
+                        stageParameters.add(testSuite.evaluateAsArgument(stage.command().get(i), testCaseFiles));
+                    }
+                    // Trim out any blank parameters at end
+                    while (!stageParameters.isEmpty() && stageParameters.getLast().isBlank()) {
+                        stageParameters.removeLast();
+                    }
+                    parameters.add(stageParameters);
+                    display.add(String.format("%s %s", cmd, String.join(" ", stageParameters)));
                 }
                 // Apply the file preservation logic
                 testCaseFiles.values().forEach(settings.filePreservation()::apply);
-                // Trim out any blank parameters at end
-                while (!parameters.isEmpty() && parameters.getLast().isBlank()) {
-                    parameters.removeLast();
-                }
 
-                settings.out.printf("\t%d: %s %s\n", n+1, cmd, String.join(" ", parameters));
+                commandLine = display.stream().map(String::trim).collect(Collectors.joining(" | "));
+                settings.out.printf("\t%d: %s\n", n+1, String.join(" | ", display));
 
-                // Setup stdin
-                InputStream stdin = InputStream.nullInputStream();
-                if (step.stdin() != null) {
-                    stdin = new ByteArrayInputStream(testSuite.evaluateAsBytes(step.stdin(), settings));
+                SuiteResult.StepResult result = step.concurrency() > 1
+                        ? runConcurrently(n+1, commandLine, step, commands, parameters, testSuite, testCaseFiles,
+                            runner, settings)
+                        : runStep(n+1, commandLine, step, commands, parameters, testSuite, testCaseFiles,
+                            runner, settings, () -> {});
+                results.add(result);
+                if (!result.passed()) {
+                    break;
                 }
+            } catch (IOException e) {
+                results.add(SuiteResult.StepResult.failed(n+1, commandLine, step.returnCode(), stepStart, e));
+                return new SuiteResult(testSuite, results, Duration.ofNanos(System.nanoTime() - suiteStart),
+                        new UncheckedIOException(e));
+            } catch (RuntimeException | AssertionError e) {
+                results.add(SuiteResult.StepResult.failed(n+1, commandLine, step.returnCode(), stepStart, e));
+                return new SuiteResult(testSuite, results, Duration.ofNanos(System.nanoTime() - suiteStart), e);
+            }
+        }
+        return new SuiteResult(testSuite, results, Duration.ofNanos(System.nanoTime() - suiteStart), null);
+    }
 
-                // Setup stdout & stderr
-                ByteArrayOutputStream stdout = new ByteArrayOutputStream();
-                ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+    private static void validate(Config.Step step) {
+        for (Config.Step stage : step.stages()) {
+            if (stage.command() == null || stage.command().isEmpty()) {
+                throw new RuntimeException("Every step (and pipe stage) needs a 'command'");
+            }
+            if (stage != step && !stage.pipe().isEmpty()) {
+                throw new RuntimeException("A pipe stage cannot have its own 'pipe'");
+            }
+        }
+        if (!step.pipe().isEmpty()) {
+            // Anything that would otherwise be silently ignored is an error
+            List<String> stageOnly = new ArrayList<>();
+            addIf(stageOnly, step.command() != null, "command");
+            addIf(stageOnly, step.stderr() != null, "stderr");
+            addIf(stageOnly, step.stderrFragments() != null, "stderr-fragments");
+            addIf(stageOnly, step.returnCode() != 0, "rc");
+            addIf(stageOnly, !step.env().isEmpty(), "env");
+            addIf(stageOnly, step.cwd() != null, "cwd");
+            addIf(stageOnly, step.limits() != null, "limits");
+            if (!stageOnly.isEmpty()) {
+                String msg = String.format("A 'pipe' step sets %s on each stage instead",
+                        String.join(", ", stageOnly));
+                throw new RuntimeException(msg);
+            }
+            if (step.profileDump() != null) {
+                throw new RuntimeException("'profile-dump' cannot be used with 'pipe'");
+            }
+            for (Config.Step stage : step.pipe()) {
+                List<String> stepOnly = new ArrayList<>();
+                addIf(stepOnly, stage.stdin() != null && !stage.stdin().isEmpty(), "stdin");
+                addIf(stepOnly, !stage.stdinScript().isEmpty(), "stdin-script");
+                addIf(stepOnly, stage.stdout() != null, "stdout");
+                addIf(stepOnly, stage.stdoutFragments() != null, "stdout-fragments");
+                addIf(stepOnly, !stage.expectLines().isEmpty(), "expect-lines");
+                addIf(stepOnly, !stage.rejectLines().isEmpty(), "reject-lines");
+                addIf(stepOnly, stage.maxOutput() != null, "max-output");
+                addIf(stepOnly, stage.concurrency() != 0, "concurrency");
+                addIf(stepOnly, stage.profileDump() != null, "profile-dump");
+                if (!stepOnly.isEmpty()) {
+                    String msg = String.format("A pipe stage cannot set %s; set it on the 'pipe' step",
+                            String.join(", ", stepOnly));
+                    throw new RuntimeException(msg);
+                }
+            }
+        }
+        if (step.concurrency() > 1 && step.profileDump() != null) {
+            throw new RuntimeException("'profile-dump' cannot be used with 'concurrency'");
+        }
+        boolean hasStdin = step.stdin() != null && !step.stdin().isEmpty();
+        if (hasStdin && !step.stdinScript().isEmpty()) {
+            throw new RuntimeException("A step may have 'stdin' or 'stdin-script' but not both");
+        }
+        // The process is stopped once the lines are seen, so how much output was captured is a matter of timing
+        if (!step.expectLines().isEmpty() && (step.stdout() != null || step.stdoutFragments() != null)) {
+            throw new RuntimeException("'expect-lines' cannot be combined with 'stdout' or 'stdout-fragments'");
+        }
+    }
 
-                // Run step
-                int rc = runner.execute(command, parameters, stdin, stdout, stderr);
+    private static void addIf(List<String> names, boolean condition, String name) {
+        if (condition) {
+            names.add("'" + name + "'");
+        }
+    }
 
-                List<String> errors = new ArrayList<>();
-                if (rc != step.returnCode()) {
-                    errors.add(String.format("Expecting exit code of %d but got %d", step.returnCode(), rc));
-                }
+    /**
+     * Runs 'concurrency' copies of the step against the same files. Every instance is fully set up before
+     * any of them starts, so they really do hit the shared state together. Each instance keeps its own
+     * output and checks; errors are reported per instance.
+     */
+    private static SuiteResult.StepResult runConcurrently(int number, String commandLine, Config.Step step,
+                                                          List<Config.Command> commands, List<List<String>> parameters,
+                                                          TestSuite testSuite, Map<String,File> testCaseFiles,
+                                                          TestRunner runner, Settings settings) {
+        final int instances = step.concurrency();
+        CountDownLatch ready = new CountDownLatch(instances);
+        Runnable startGate = () -> {
+            ready.countDown();
+            try {
+                ready.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        };
+        List<ByteArrayOutputStream> outputs = new ArrayList<>();
+        List<Future<SuiteResult.StepResult>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newFixedThreadPool(instances)) {
+            for (int i = 0; i < instances; i++) {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                outputs.add(output);
+                Settings instanceSettings = settings.withOut(new PrintStream(output, true));
+                futures.add(executor.submit(() -> {
+                    try {
+                        return runStep(number, commandLine, step, commands, parameters, testSuite, testCaseFiles,
+                                runner, instanceSettings, startGate);
+                    } finally {
+                        // An instance that failed during setup must not hold the others back
+                        ready.countDown();
+                    }
+                }));
+            }
+        }
+        Duration wall = Duration.ofNanos(System.nanoTime() - start);
 
-                // Check stdout
-                if (step.stdout() != null) {
-                    byte[] expectedStdout = testSuite.evaluateAsBytes(step.stdout(), settings);
-                    handleOutput("stdout", step, settings, new String(expectedStdout), stdout.toString(), errors);
+        List<String> errors = new ArrayList<>();
+        List<Duration> latencies = new ArrayList<>();
+        StringBuilder diffs = new StringBuilder();
+        Integer rc = null;
+        for (int i = 0; i < instances; i++) {
+            SuiteResult.StepResult result;
+            try {
+                result = futures.get(i).get();
+            } catch (ExecutionException e) {
+                result = SuiteResult.StepResult.failed(number, commandLine, step.returnCode(), start, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            final int instance = i + 1;
+            result.errors().forEach(error -> errors.add(String.format("Instance %d: %s", instance, error)));
+            if (result.diff() != null) {
+                diffs.append(String.format("Instance %d:\n%s", instance, result.diff()));
+            }
+            if (rc == null || (result.returnCode() != null && !result.passed())) {
+                rc = result.returnCode();
+            }
+            latencies.add(result.duration());
+            if (outputs.get(i).size() > 0) {
+                settings.out.printf("\t   instance %d:\n%s", instance, outputs.get(i));
+            }
+        }
+        LoadSummary load = new LoadSummary(wall, latencies);
+        settings.out.printf("\t   %s\n", load);
+        return new SuiteResult.StepResult(number, commandLine, step.stages().getLast().returnCode(), rc, wall,
+                errors, diffs.isEmpty() ? null : diffs.toString(), null, load);
+    }
+
+    private static SuiteResult.StepResult runStep(int number, String commandLine, Config.Step step,
+                                                  List<Config.Command> commands, List<List<String>> parameters,
+                                                  TestSuite testSuite, Map<String,File> testCaseFiles,
+                                                  TestRunner runner, Settings settings, Runnable startGate)
+            throws IOException {
+        final Charset charset = step.criteria().charset();
+        final long maxOutput = step.maxOutputBytes();
+        final List<Config.Step> stages = step.stages();
+        final boolean pipeline = !step.pipe().isEmpty();
+        // Setup stdin; nothing is read until the runner pulls it
+        ScriptedInputStream script = null;
+        if (!step.stdinScript().isEmpty()) {
+            script = new ScriptedInputStream(step.stdinScript(), charset,
+                    value -> testSuite.evaluateAsStream(value, settings, charset, testCaseFiles));
+        }
+        final InputStream stdin = script != null ? script
+                : step.stdin() != null && !step.stdin().isEmpty()
+                    ? testSuite.evaluateAsStream(step.stdin(), settings, charset, testCaseFiles)
+                : InputStream.nullInputStream();
+
+        // Every stage of a pipe has its own stderr
+        List<CaptureBuffer> stderrs = new ArrayList<>();
+        try (stdin;
+             CaptureBuffer stdout = new CaptureBuffer(settings.captureMemoryLimit(), maxOutput)) {
+            for (int i = 0; i < stages.size(); i++) {
+                stderrs.add(new CaptureBuffer(settings.captureMemoryLimit(), maxOutput));
+            }
+
+            // Line expectations are checked as the output arrives
+            OutputStream stdoutTarget = stdout;
+            LineWatcher watcher = null;
+            if (!step.expectLines().isEmpty() || !step.rejectLines().isEmpty()) {
+                watcher = new LineWatcher(stdout, testSuite.interpolateAll(step.expectLines(), testCaseFiles),
+                        testSuite.interpolateAll(step.rejectLines(), testCaseFiles), charset);
+                stdoutTarget = watcher;
+            }
+            if (script != null) {
+                stdoutTarget = script.monitor(stdoutTarget);
+            }
+
+            // Run step
+            ProcessProfile profile = null;
+            if (!pipeline && (settings.profileInterval() != null || step.profileDump() != null)) {
+                profile = new ProcessProfile(settings.profileInterval() != null
+                        ? settings.profileInterval() : ProcessProfile.DEFAULT_INTERVAL);
+            }
+            startGate.run();
+            Events.StepExecute event = new Events.StepExecute();
+            event.begin();
+            long stepStart = System.nanoTime();
+            int[] rcs = pipeline
+                    ? runner.executePipeline(commands, parameters, stdin, stdoutTarget, List.copyOf(stderrs))
+                    : new int[] { runner.execute(commands.getFirst(), parameters.getFirst(), stdin, stdoutTarget,
+                        stderrs.getFirst(), profile) };
+            Duration duration = Duration.ofNanos(System.nanoTime() - stepStart);
+            final int rc = rcs[rcs.length - 1];
+            if (event.shouldCommit()) {
+                event.testName = testSuite.testName();
+                event.variables = Events.variables(testSuite);
+                event.step = number;
+                event.command = commandLine;
+                event.returnCode = rc;
+                event.stdoutSize = stdout.size();
+                event.stderrSize = stderrs.stream().mapToLong(CaptureBuffer::size).sum();
+                event.commit();
+            }
+            ProcessProfile.Summary summary = profile == null ? null : profile.summary();
+            if (summary != null) {
+                settings.out.printf("\t   %s\n", summary);
+            }
+            if (profile != null && step.profileDump() != null) {
+                profile.dump(settings.baseDirectory().resolve(testSuite.evaluateAsArgument(step.profileDump(), testCaseFiles)));
+            }
+
+            List<String> errors = new ArrayList<>();
+            boolean limitExceeded = stdout.limitExceeded() || stderrs.stream().anyMatch(CaptureBuffer::limitExceeded);
+            if (limitExceeded) {
+                errors.add(String.format("Output exceeded max-output of %d bytes", maxOutput));
+            }
+            if (script != null && script.failure() != null) {
+                errors.add("'stdin-script' " + script.failure());
+            }
+            if (watcher != null) {
+                watcher.finish();
+                watcher.addErrors("stdout", errors);
+            }
+            // A process we stopped has no meaningful exit code; one that finished by itself still does
+            boolean stoppedEarly = watcher != null && watcher.state() == LineWatcher.State.SATISFIED
+                    && watcher.processStopped();
+            for (int i = 0; i < stages.size(); i++) {
+                int expected = stages.get(i).returnCode();
+                if (!stoppedEarly && !limitExceeded && rcs[i] != expected) {
+                    errors.add(pipeline
+                            ? String.format("Stage %d expecting exit code of %d but got %d", i + 1, expected, rcs[i])
+                            : String.format("Expecting exit code of %d but got %d", expected, rcs[i]));
                 }
+            }
 
-                // Check stderr
-                if (step.stderr() != null) {
-                    byte[] expectedStderr = testSuite.evaluateAsBytes(step.stderr(), settings);
-                    handleOutput("stderr", step, settings, new String(expectedStderr), stderr.toString(), errors);
+            StringBuilder diffs = new StringBuilder();
+            // Check stdout
+            if (step.stdout() != null) {
+                checkOutput("stdout", step.stdout(), stdout, number, step, testSuite, testCaseFiles, settings, errors, diffs);
+            }
+            if (step.stdoutFragments() != null) {
+                try (InputStream inputStream = stdout.inputStream()) {
+                    handleFragments("stdout", testSuite.interpolate(step.stdoutFragments(), testCaseFiles), charset,
+                            inputStream, errors);
                 }
+            }
 
-                if (!errors.isEmpty()) {
-                    throw new RuntimeException("Errors encountered: " + errors);
+            // Check stderr (for each stage of a pipe)
+            for (int i = 0; i < stages.size(); i++) {
+                Config.Step stage = stages.get(i);
+                String name = pipeline ? String.format("stderr (stage %d)", i + 1) : "stderr";
+                if (stage.stderr() != null) {
+                    checkOutput(name, stage.stderr(), stderrs.get(i), number, stage, testSuite, testCaseFiles, settings,
+                            errors, diffs);
                 }
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
+                if (stage.stderrFragments() != null) {
+                    try (InputStream inputStream = stderrs.get(i).inputStream()) {
+                        handleFragments(name, testSuite.interpolate(stage.stderrFragments(), testCaseFiles),
+                                stage.criteria().charset(), inputStream, errors);
+                    }
+                }
+            }
+
+            return new SuiteResult.StepResult(number, commandLine, stages.getLast().returnCode(), rc, duration,
+                    errors, diffs.isEmpty() ? null : diffs.toString(), summary, null);
+        } finally {
+            for (CaptureBuffer stderr : stderrs) {
+                stderr.close();
             }
         }
     }
-    public static void handleOutput(String name, Config.Step step, Settings settings,
-                                    String expected, String actual, List<String> errors) {
+
+    private static void checkOutput(String name, String expectedValue, CaptureBuffer actual, int number,
+                                    Config.Step step, TestSuite testSuite, Map<String,File> testCaseFiles,
+                                    Settings settings, List<String> errors, StringBuilder diffs) throws IOException {
+        Events.OutputMatch event = new Events.OutputMatch();
+        event.begin();
+        byte[] expected = testSuite.evaluateAsBytes(expectedValue, settings, step.criteria().charset(), testCaseFiles);
+        String diff = handleOutput(name, step, settings, expected, actual, errors);
+        if (event.shouldCommit()) {
+            event.testName = testSuite.testName();
+            event.variables = Events.variables(testSuite);
+            event.step = number;
+            event.stream = name;
+            event.expectedSize = expected.length;
+            event.actualSize = actual.size();
+            event.matched = diff == null;
+            event.commit();
+        }
+        appendDiff(diffs, name, diff, settings);
+    }
+
+    private static void appendDiff(StringBuilder diffs, String name, String diff, Settings settings) {
+        if (diff == null) {
+            return;
+        }
+        int remaining = settings.resultDiffLimit() - diffs.length();
+        if (remaining <= 0) {
+            return;
+        }
+        String section = String.format("%s:\n%s", name, diff);
+        if (section.length() > remaining) {
+            section = section.substring(0, remaining) + "\n... (truncated)\n";
+        }
+        diffs.append(section);
+    }
+
+    public static void handleFragments(String name, Config.Fragments fragments, Charset charset,
+                                       byte[] actual, List<String> errors) {
+        reportFragments(name, fragments, fragments.matcher(charset).scan(actual), errors);
+    }
+
+    public static void handleFragments(String name, Config.Fragments fragments, Charset charset,
+                                       InputStream actual, List<String> errors) throws IOException {
+        reportFragments(name, fragments, fragments.matcher(charset).scan(actual), errors);
+    }
+
+    private static void reportFragments(String name, Config.Fragments fragments, BitSet found, List<String> errors) {
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < fragments.required().size(); i++) {
+            if (!found.get(i)) {
+                missing.add(fragments.required().get(i));
+            }
+        }
+        List<String> forbidden = new ArrayList<>();
+        for (int i = 0; i < fragments.forbidden().size(); i++) {
+            if (found.get(fragments.required().size() + i)) {
+                forbidden.add(fragments.forbidden().get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            errors.add(String.format("'%s' is missing %s", name, missing));
+        }
+        if (!forbidden.isEmpty()) {
+            errors.add(String.format("'%s' contains forbidden %s", name, forbidden));
+        }
+    }
+
+    // Whitespace handling and regex need all of the output as text; past this they give up rather than
+    // exhaust the heap
+    public static final int TEXT_MATCH_LIMIT = 64 * 1024 * 1024;
+
+    public static String handleOutput(String name, Config.Step step, Settings settings,
+                                      byte[] expected, CaptureBuffer actual, List<String> errors) throws IOException {
+        Config.MatchCriteria criteria = step.criteria();
+        if (!criteria.isByteComparable()) {
+            if (actual.size() > TEXT_MATCH_LIMIT) {
+                errors.add(String.format("'%s' is %d bytes, which is too large to match with whitespace '%s' " +
+                        "and match '%s' (limit %d bytes)", name, actual.size(), criteria.whitespace(),
+                        criteria.match(), TEXT_MATCH_LIMIT));
+                return null;
+            }
+            return handleOutput(name, step, settings, expected, actual.toByteArray(), errors);
+        }
+        // Byte matching streams spilled output, and only a prefix is decoded for the diff or display
+        boolean matched = switch (criteria.match()) {
+            case exact -> actual.contentEquals(expected);
+            case ignore -> true;
+            case contains -> actual.contains(expected);
+            case regex -> throw new IllegalStateException("regex is not byte comparable");
+        };
+        if (!matched) {
+            errors.add(String.format("'%s' does not match", name));
+            String diffOut = Diff.render(new String(expected, criteria.charset()),
+                    head(actual, settings, criteria.charset()), settings.diffLimits());
+            settings.out.println(diffOut.indent(10));
+            return diffOut;
+        }
+        else if (settings.alwaysShowOutput && actual.size() > 0) {
+            String text = head(actual, settings, criteria.charset());
+            if (!text.isBlank()) {
+                settings.out.println(text.indent(10));
+            }
+        }
+        return null;
+    }
+
+    private static String head(CaptureBuffer actual, Settings settings, Charset charset) throws IOException {
+        byte[] head = actual.head(settings.captureMemoryLimit());
+        String text = new String(head, charset);
+        if (actual.size() > head.length) {
+            text += String.format("\n... (%d more bytes not shown)\n", actual.size() - head.length);
+        }
+        return text;
+    }
+
+    // Compares raw bytes when possible; text is only decoded for whitespace handling, regex or reporting
+    public static String handleOutput(String name, Config.Step step, Settings settings,
+                                      byte[] expected, byte[] actual, List<String> errors) {
+        Config.MatchCriteria criteria = step.criteria();
+        if (!criteria.isByteComparable()) {
+            return handleOutput(name, step, settings, new String(expected, criteria.charset()),
+                    new String(actual, criteria.charset()), errors);
+        }
+        if (!criteria.match().matches(expected, actual)) {
+            errors.add(String.format("'%s' does not match", name));
+            String diffOut = Diff.render(new String(expected, criteria.charset()), new String(actual, criteria.charset()),
+                    settings.diffLimits());
+            settings.out.println(diffOut.indent(10));
+            return diffOut;
+        }
+        else if (settings.alwaysShowOutput && actual.length > 0) {
+            String text = new String(actual, criteria.charset());
+            if (!text.isBlank()) {
+                settings.out.println(text.indent(10));
+            }
+        }
+        return null;
+    }
+
+    public static String handleOutput(String name, Config.Step step, Settings settings,
+                                      String expected, String actual, List<String> errors) {
         Config.Whitespace whitespace = step.criteria().whitespace();
         expected = whitespace.apply(expected);
         actual = whitespace.apply(actual);
@@ -100,23 +533,35 @@ public class TestHarness {
         Config.MatchType matchType = step.criteria().match();
         if (!matchType.matches(expected, actual)) {
             errors.add(String.format("'%s' does not match", name));
-            String diffOut = diff(expected, actual);
+            String diffOut = Diff.render(expected, actual, settings.diffLimits());
             settings.out.println(diffOut.indent(10));
+            return diffOut;
         }
         else if (settings.alwaysShowOutput && !actual.isBlank()) {
             settings.out.println(actual.indent(10));
         }
+        return null;
     }
 
     public static Settings.Builder settings() {
         return new Settings.Builder();
     }
-    public record Settings(FilePreservation filePreservation, PrintStream out, boolean alwaysShowOutput, Path baseDirectory) {
+    public record Settings(FilePreservation filePreservation, PrintStream out, boolean alwaysShowOutput, Path baseDirectory,
+                           int resultDiffLimit, Diff.Limits diffLimits, int captureMemoryLimit,
+                           Duration profileInterval) {
+        public Settings withOut(PrintStream out) {
+            return new Settings(filePreservation, out, alwaysShowOutput, baseDirectory, resultDiffLimit, diffLimits,
+                    captureMemoryLimit, profileInterval);
+        }
         public static class Builder {
             private FilePreservation filePreservation = FilePreservation.DELETE;
             private PrintStream out = System.out;
             private boolean alwaysShowOutput = false;
             private Path baseDirectory = Path.of(System.getProperty("user.dir"));   // default to working directory
+            private int resultDiffLimit = 8192;
+            private Diff.Limits diffLimits = Diff.Limits.DEFAULT;
+            private int captureMemoryLimit = 8 * 1024 * 1024;
+            private Duration profileInterval = null;
             public Builder deleteFiles() {
                 this.filePreservation = FilePreservation.DELETE;
                 return this;
@@ -138,56 +583,98 @@ public class TestHarness {
                 this.baseDirectory = baseDirectory;
                 return this;
             }
+            public Builder resultDiffLimit(int resultDiffLimit) {
+                this.resultDiffLimit = resultDiffLimit;
+                return this;
+            }
+            public Builder diffLimits(Diff.Limits diffLimits) {
+                this.diffLimits = diffLimits;
+                return this;
+            }
+            public Builder captureMemoryLimit(int captureMemoryLimit) {
+                this.captureMemoryLimit = captureMemoryLimit;
+                return this;
+            }
+            public Builder profileInterval(Duration profileInterval) {
+                this.profileInterval = profileInterval;
+                return this;
+            }
             public Settings get() {
-                return new Settings(filePreservation, out, alwaysShowOutput, baseDirectory);
+                return new Settings(filePreservation, out, alwaysShowOutput, baseDirectory, resultDiffLimit, diffLimits,
+                        captureMemoryLimit, profileInterval);
             }
         }
     }
 
     public static String diff(String expected, String actual) {
-        StringWriter sw = new StringWriter();
-        PrintWriter pw = new PrintWriter(sw);
-        final Map<DiffRow.Tag,String> tags = Map.of(
-                DiffRow.Tag.EQUAL, "=",
-                DiffRow.Tag.CHANGE, "!",
-                DiffRow.Tag.DELETE, "-",
-                DiffRow.Tag.INSERT, "+"
-            );
-        DiffRowGenerator generator = DiffRowGenerator.create().build();
-        List<DiffRow> rows = generator.generateDiffRows(expected.lines().toList(), actual.lines().toList());
-        int oldSize = rows.stream().mapToInt(r -> r.getOldLine().length()).max().orElse(0);
-        int newSize = rows.stream().mapToInt(r -> r.getNewLine().length()).max().orElse(0);
-        // Note we assume only one of these might be 0
-        if (oldSize == 0) {
-            final String fmt = String.format("%%s |          | %%-%1$d.%1$ds |\n", newSize);
-            rows.forEach(diff -> pw.printf(fmt, tags.get(diff.getTag()), diff.getNewLine()));
-        }
-        else if (newSize == 0) {
-            final String fmt = String.format("%%s | %%-%1$d.%1$ds |          |\n", oldSize);
-            rows.forEach(diff -> pw.printf(fmt, tags.get(diff.getTag()), diff.getOldLine()));
-        }
-        else {
-            final String fmt = String.format("%%s | %%-%1$d.%1$ds | %%-%2$d.%2$ds |\n", oldSize, newSize);
-            rows.forEach(diff -> pw.printf(fmt, tags.get(diff.getTag()), diff.getOldLine(), diff.getNewLine()));
-        }
-        return sw.toString();
+        return Diff.render(expected, actual, Diff.Limits.DEFAULT);
     }
 
     public enum FilePreservation {
-        DELETE(File::deleteOnExit),
-        KEEP(file -> {});
+        // Deleted when the suite finishes, or at exit if it never does
+        DELETE(PendingFiles::add, PendingFiles::delete),
+        KEEP(file -> {}, file -> {});
 
         private final Consumer<File> preservationFn;
+        private final Consumer<File> releaseFn;
 
-        FilePreservation(Consumer<File> preservationFn) {
+        FilePreservation(Consumer<File> preservationFn, Consumer<File> releaseFn) {
             this.preservationFn = preservationFn;
+            this.releaseFn = releaseFn;
         }
         public void apply(File file) {
             preservationFn.accept(file);
         }
+        /** Called once the suite is done with the file. */
+        public void release(File file) {
+            releaseFn.accept(file);
+        }
+    }
+
+    // Like File.deleteOnExit, except a file deleted sooner is forgotten, so a long --watch session does not
+    // accumulate every file it ever created
+    private static final class PendingFiles {
+        private static final Set<File> FILES = ConcurrentHashMap.newKeySet();
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> FILES.forEach(File::delete)));
+        }
+
+        static void add(File file) {
+            FILES.add(file);
+        }
+
+        static void delete(File file) {
+            file.delete();
+            FILES.remove(file);
+        }
     }
 
     public interface TestRunner {
         int execute(Config.Command command, List<String> parameters, InputStream stdin, OutputStream stdout, OutputStream stderr);
+
+        /**
+         * Runs the commands with each one's stdout feeding the next one's stdin; returns every exit code. This
+         * default passes the data along in memory; runners that start real processes connect them with OS pipes.
+         */
+        default int[] executePipeline(List<Config.Command> commands, List<List<String>> parameters, InputStream stdin,
+                                      OutputStream stdout, List<OutputStream> stderr) {
+            int[] returnCodes = new int[commands.size()];
+            InputStream input = stdin;
+            for (int i = 0; i < commands.size(); i++) {
+                boolean last = i == commands.size() - 1;
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                returnCodes[i] = execute(commands.get(i), parameters.get(i), input, last ? stdout : output,
+                        stderr.get(i));
+                input = new ByteArrayInputStream(output.toByteArray());
+            }
+            return returnCodes;
+        }
+
+        /** Runners that start real processes sample them into the profile (when one is given). */
+        default int execute(Config.Command command, List<String> parameters, InputStream stdin, OutputStream stdout,
+                            OutputStream stderr, ProcessProfile profile) {
+            return execute(command, parameters, stdin, stdout, stderr);
+        }
     }
 }
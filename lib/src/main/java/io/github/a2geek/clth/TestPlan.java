@@ -0,0 +1,430 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Stream;
+
+/**
+ * A precompiled test plan: the suites of one or more configurations, already expanded, in a compact
+ * binary form that is memory-mapped and read back without any YAML parsing. Every string is stored
+ * once in a table and shared by everything that uses it; suites of the same test case share their
+ * steps just as {@link TestSuite#build(Config)} does.
+ * <p>
+ * Plans are tied to the configuration records, so VERSION changes whenever they do.
+ */
+public class TestPlan {
+    private static final int MAGIC = 0x434c5450;    // "CLTP"
+    private static final int VERSION = 1;
+
+    public static boolean isPlan(Path path) {
+        try (DataInputStream input = new DataInputStream(Files.newInputStream(path))) {
+            return input.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static void write(List<Config> configs, Path path) throws IOException {
+        Writer writer = new Writer();
+        writer.writeCount(configs.size());
+        for (Config config : configs) {
+            validate(config);
+            writer.writeConfig(config);
+        }
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(writer.strings.size());
+            for (String value : writer.strings.keySet()) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+            writer.body.writeTo(output);
+        }
+    }
+
+    public static List<TestSuite> read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                String msg = String.format("'%s' is not a test plan", path);
+                throw new IOException(msg);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                String msg = String.format("Test plan '%s' is version %d but this is version %d; compile it again",
+                        path, version, VERSION);
+                throw new IOException(msg);
+            }
+            return new Reader(buffer).readSuites();
+        }
+    }
+
+    // Patterns are checked once here instead of failing part way through a run
+    static void validate(Config config) {
+        if (config.tests() == null) {
+            return;
+        }
+        for (Config.TestCase testCase : config.tests()) {
+            if (testCase == null || testCase.steps() == null) {
+                continue;
+            }
+            for (Config.Step step : testCase.steps()) {
+                List<String> patterns = new ArrayList<>(step.expectLines());
+                patterns.addAll(step.rejectLines());
+                for (Config.Step stage : step.stages()) {
+                    if (stage.criteria().match() == Config.MatchType.regex) {
+                        Stream.of(step.stdout(), stage.stderr())
+                                .filter(value -> value != null && !value.startsWith("file:") && !value.startsWith("$"))
+                                .forEach(patterns::add);
+                    }
+                }
+                for (String pattern : patterns) {
+                    // Until its variables are filled in for a suite, a template is not a pattern yet
+                    if (Template.hasReferences(pattern)) {
+                        continue;
+                    }
+                    try {
+                        Pattern.compile(pattern);
+                    } catch (PatternSyntaxException ex) {
+                        String msg = String.format("Test '%s' has an invalid pattern: %s", testCase.name(),
+                                ex.getMessage());
+                        throw new RuntimeException(msg, ex);
+                    }
+                }
+            }
+        }
+    }
+
+    private static class Writer {
+        private final Map<String,Integer> strings = new LinkedHashMap<>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final DataOutputStream output = new DataOutputStream(body);
+
+        void writeConfig(Config config) throws IOException {
+            writeMap(config.commands(), this::writeCommand);
+            writeMap(config.files(), this::writeTestFile);
+            writeList(config.tests(), this::writeTestCase);
+            // The expansion is stored as the test case each suite came from and its variables
+            List<TestSuite> suites = TestSuite.build(config).toList();
+            writeCount(suites.size());
+            for (TestSuite testSuite : suites) {
+                writeCount(indexOf(config, testSuite));
+                writeMap(testSuite.variables(), this::writeString);
+            }
+        }
+
+        private static int indexOf(Config config, TestSuite testSuite) {
+            for (int i = 0; i < config.tests().size(); i++) {
+                Config.TestCase testCase = config.tests().get(i);
+                if (testCase.steps() == testSuite.steps() && Objects.equals(testCase.name(), testSuite.testName())) {
+                    return i;
+                }
+            }
+            throw new IllegalStateException("Suite does not belong to this configuration: " + testSuite.id());
+        }
+
+        void writeCommand(Config.Command command) throws IOException {
+            if (present(command)) {
+                writeString(command.mainClass());
+                writeString(command.executable());
+                output.writeBoolean(command.systemExit());
+                writeMap(command.env(), this::writeString);
+                writeString(command.cwd());
+                writeLimits(command.limits());
+            }
+        }
+
+        void writeLimits(Config.Limits limits) throws IOException {
+            if (present(limits)) {
+                writeString(limits.addressSpace());
+                writeNumber(limits.cpuSeconds());
+                writeNumber(limits.openFiles());
+            }
+        }
+
+        void writeTestFile(Config.TestFile testFile) throws IOException {
+            if (present(testFile)) {
+                writeEnum(testFile.type());
+                writeString(testFile.content());
+                writeString(testFile.prefix());
+                writeString(testFile.suffix());
+                writeString(testFile.size());
+                writeNumber(testFile.seed());
+                writeNumber(testFile.count());
+            }
+        }
+
+        // Variables are already expanded into the suites, so they are not kept
+        void writeTestCase(Config.TestCase testCase) throws IOException {
+            if (present(testCase)) {
+                writeString(testCase.name());
+                writeList(testCase.steps(), this::writeStep);
+            }
+        }
+
+        void writeStep(Config.Step step) throws IOException {
+            if (present(step)) {
+                writeList(step.command(), this::writeString);
+                writeString(step.stdin());
+                writeString(step.stdout());
+                writeString(step.stderr());
+                writeCriteria(step.declaredCriteria());
+                output.writeInt(step.returnCode());
+                writeFragments(step.stdoutFragments());
+                writeFragments(step.stderrFragments());
+                writeList(step.expectLines(), this::writeString);
+                writeList(step.rejectLines(), this::writeString);
+                writeString(step.maxOutput());
+                writeList(step.stdinScript(), this::writeStdinChunk);
+                writeMap(step.env(), this::writeString);
+                writeString(step.cwd());
+                writeLimits(step.limits());
+                writeString(step.profileDump());
+                writeList(step.pipe(), this::writeStep);
+                output.writeInt(step.concurrency());
+            }
+        }
+
+        void writeCriteria(Config.MatchCriteria criteria) throws IOException {
+            if (present(criteria)) {
+                writeEnum(criteria.declaredMatch());
+                writeEnum(criteria.declaredWhitespace());
+                writeString(criteria.declaredCharset() == null ? null : criteria.declaredCharset().name());
+            }
+        }
+
+        void writeFragments(Config.Fragments fragments) throws IOException {
+            if (present(fragments)) {
+                writeList(fragments.required(), this::writeString);
+                writeList(fragments.forbidden(), this::writeString);
+            }
+        }
+
+        void writeStdinChunk(Config.StdinChunk chunk) throws IOException {
+            if (present(chunk)) {
+                writeString(chunk.send());
+                writeString(chunk.delay());
+                writeString(chunk.waitFor());
+                writeString(chunk.timeout());
+            }
+        }
+
+        void writeString(String value) throws IOException {
+            output.writeInt(value == null ? -1 : strings.computeIfAbsent(value, v -> strings.size()));
+        }
+
+        void writeNumber(Number value) throws IOException {
+            if (present(value)) {
+                output.writeLong(value.longValue());
+            }
+        }
+
+        void writeEnum(Enum<?> value) throws IOException {
+            output.writeByte(value == null ? -1 : value.ordinal());
+        }
+
+        void writeCount(int count) throws IOException {
+            output.writeInt(count);
+        }
+
+        boolean present(Object value) throws IOException {
+            output.writeBoolean(value != null);
+            return value != null;
+        }
+
+        <T> void writeList(List<T> list, ElementWriter<T> elementWriter) throws IOException {
+            writeCount(list == null ? -1 : list.size());
+            if (list != null) {
+                for (T element : list) {
+                    elementWriter.write(element);
+                }
+            }
+        }
+
+        <T> void writeMap(Map<String,T> map, ElementWriter<T> elementWriter) throws IOException {
+            writeCount(map == null ? -1 : map.size());
+            if (map != null) {
+                for (Map.Entry<String,T> entry : map.entrySet()) {
+                    writeString(entry.getKey());
+                    elementWriter.write(entry.getValue());
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ElementWriter<T> {
+        void write(T value) throws IOException;
+    }
+
+    private static class Reader {
+        private final ByteBuffer buffer;
+        private final String[] strings;
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+
+        List<TestSuite> readSuites() {
+            List<TestSuite> suites = new ArrayList<>();
+            int configs = buffer.getInt();
+            for (int n = 0; n < configs; n++) {
+                Map<String,Config.Command> commands = readMap(this::readCommand);
+                Map<String,Config.TestFile> files = readMap(this::readTestFile);
+                List<Config.TestCase> tests = readList(this::readTestCase);
+                int count = buffer.getInt();
+                for (int i = 0; i < count; i++) {
+                    Config.TestCase testCase = tests.get(buffer.getInt());
+                    Map<String,String> variables = readMap(this::readString);
+                    suites.add(new TestSuite(commands, testCase.name(), variables, files, testCase.steps()));
+                }
+            }
+            return suites;
+        }
+
+        Config.Command readCommand() {
+            if (!present()) {
+                return null;
+            }
+            return new Config.Command(readString(), readString(), buffer.get() != 0, readMap(this::readString),
+                    readString(), readLimits());
+        }
+
+        Config.Limits readLimits() {
+            if (!present()) {
+                return null;
+            }
+            return new Config.Limits(readString(), readInteger(), readInteger());
+        }
+
+        Config.TestFile readTestFile() {
+            if (!present()) {
+                return null;
+            }
+            return new Config.TestFile(readEnum(Config.FileType.values()), readString(), readString(), readString(),
+                    readString(), readLong(), readLong());
+        }
+
+        Config.TestCase readTestCase() {
+            if (!present()) {
+                return null;
+            }
+            return new Config.TestCase(readString(), Map.of(), readList(this::readStep));
+        }
+
+        Config.Step readStep() {
+            if (!present()) {
+                return null;
+            }
+            return new Config.Step(readList(this::readString), readString(), readString(), readString(),
+                    readCriteria(), buffer.getInt(), readFragments(), readFragments(),
+                    readList(this::readString), readList(this::readString), readString(),
+                    readList(this::readStdinChunk), readMap(this::readString), readString(), readLimits(),
+                    readString(), readList(this::readStep), buffer.getInt());
+        }
+
+        Config.MatchCriteria readCriteria() {
+            if (!present()) {
+                return null;
+            }
+            Config.MatchType match = readEnum(Config.MatchType.values());
+            Config.Whitespace whitespace = readEnum(Config.Whitespace.values());
+            String charset = readString();
+            return new Config.MatchCriteria(match, whitespace, charset == null ? null : Charset.forName(charset));
+        }
+
+        Config.Fragments readFragments() {
+            if (!present()) {
+                return null;
+            }
+            return new Config.Fragments(readList(this::readString), readList(this::readString));
+        }
+
+        Config.StdinChunk readStdinChunk() {
+            if (!present()) {
+                return null;
+            }
+            return new Config.StdinChunk(readString(), readString(), readString(), readString());
+        }
+
+        String readString() {
+            int index = buffer.getInt();
+            return index == -1 ? null : strings[index];
+        }
+
+        Integer readInteger() {
+            return present() ? (int) buffer.getLong() : null;
+        }
+
+        Long readLong() {
+            return present() ? buffer.getLong() : null;
+        }
+
+        <E extends Enum<E>> E readEnum(E[] values) {
+            byte ordinal = buffer.get();
+            return ordinal == -1 ? null : values[ordinal];
+        }
+
+        boolean present() {
+            return buffer.get() != 0;
+        }
+
+        <T> List<T> readList(Supplier<T> elementReader) {
+            int count = buffer.getInt();
+            if (count == -1) {
+                return null;
+            }
+            List<T> list = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                list.add(elementReader.get());
+            }
+            return list;
+        }
+
+        <T> Map<String,T> readMap(Supplier<T> elementReader) {
+            int count = buffer.getInt();
+            if (count == -1) {
+                return null;
+            }
+            Map<String,T> map = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                map.put(readString(), elementReader.get());
+            }
+            return map;
+        }
+    }
+}
@@ -18,21 +18,82 @@
 package io.github.a2geek.clth;
 
 import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public record TestSuite(Map<String, Config.Command> commands,
                         String testName,
                         Map<String, String> variables,
                         Map<String, Config.TestFile> files,
-                        List<Config.Step> steps) {
+                        List<Config.Step> steps,
+                        Map<String, Template> templates) {
+    // Variables may refer to each other; this catches a variable that (eventually) refers to itself
+    private static final int MAX_DEPTH = 16;
+
+    public TestSuite(Map<String, Config.Command> commands, String testName, Map<String, String> variables,
+                     Map<String, Config.TestFile> files, List<Config.Step> steps) {
+        this(commands, testName, variables, files, steps, compile(commands, variables, steps));
+    }
+
+    // Parses every text the suite interpolates once, when the suite is built
+    private static Map<String, Template> compile(Map<String, Config.Command> commands, Map<String, String> variables,
+                                                 List<Config.Step> steps) {
+        Map<String, Template> templates = new HashMap<>();
+        Stream.of(variables.values().stream(),
+                        Stream.ofNullable(commands).flatMap(map -> map.values().stream()).flatMap(TestSuite::texts),
+                        Stream.ofNullable(steps).flatMap(List::stream).flatMap(TestSuite::texts))
+                .flatMap(s -> s)
+                .filter(Objects::nonNull)
+                .flatMap(text -> text.startsWith("file:") ? Stream.of(text, text.substring(5)) : Stream.of(text))
+                .filter(Template::hasReferences)
+                .forEach(text -> {
+                    try {
+                        templates.computeIfAbsent(text, Template::parse);
+                    } catch (IllegalArgumentException ex) {
+                        // Malformed text is reported by the step that uses it
+                    }
+                });
+        return Map.copyOf(templates);
+    }
+
+    private static Stream<String> texts(Config.Command command) {
+        return Stream.concat(command.env().values().stream(), Stream.ofNullable(command.cwd()));
+    }
+
+    private static Stream<String> texts(Config.Step step) {
+        return Stream.of(
+                        Stream.ofNullable(step.command()).flatMap(List::stream),
+                        Stream.of(step.stdin(), step.stdout(), step.stderr(), step.cwd(), step.profileDump()),
+                        Stream.of(step.stdoutFragments(), step.stderrFragments())
+                                .filter(Objects::nonNull)
+                                .flatMap(fragments -> Stream.concat(fragments.required().stream(),
+                                        fragments.forbidden().stream())),
+                        Stream.ofNullable(step.expectLines()).flatMap(List::stream),
+                        Stream.ofNullable(step.rejectLines()).flatMap(List::stream),
+                        Stream.ofNullable(step.stdinScript()).flatMap(List::stream).map(Config.StdinChunk::send),
+                        step.env().values().stream(),
+                        step.pipe().stream().flatMap(TestSuite::texts))
+                .flatMap(s -> s);
+    }
 
     public static Stream<TestSuite> build(Config config) {
+        Events.SuiteExpand event = new Events.SuiteExpand();
+        event.begin();
+        int suites = 0;
         Stream.Builder<TestSuite> builder = Stream.builder();
         for (Config.TestCase testCase : config.tests()) {
             // Pick the shortest length array for iterations
@@ -58,47 +119,222 @@ public record TestSuite(Map<String, Config.Command> commands,
                     }
                 });
                 builder.add(new TestSuite(config.commands(), testCase.name(), variables, config.files(), testCase.steps()));
+                suites++;
             }
         }
+        if (event.shouldCommit()) {
+            event.testCases = config.tests().size();
+            event.suites = suites;
+            event.commit();
+        }
         return builder.build();
     }
 
+    // Stable identity for a suite; variables are sorted so the same iteration always yields the same id
+    public String id() {
+        return String.format("%s %s", testName, new TreeMap<>(variables));
+    }
+
+    // Names of the commands the steps use (including pipe stages)
+    public Set<String> commandNames() {
+        return steps.stream()
+                .flatMap(step -> step.stages().stream())
+                .filter(stage -> stage.command() != null && !stage.command().isEmpty())
+                .map(stage -> stage.command().getFirst())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    // The 'file:' paths the steps read (relative to the base directory)
+    public Set<String> fileReferences() {
+        return steps.stream()
+                .flatMap(step -> Stream.of(
+                        Stream.of(step.stdin(), step.stdout()),
+                        step.stages().stream().map(Config.Step::stderr),
+                        step.stdinScript().stream().map(Config.StdinChunk::send))
+                    .flatMap(s -> s))
+                .filter(Objects::nonNull)
+                .filter(value -> value.startsWith("file:"))
+                .map(value -> referencePath(value.substring(5)))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    // Paths built from variables are resolved; anything naming a generated file is left as written
+    private String referencePath(String path) {
+        return namesFile(path, 0) ? path : interpolate(path, Map.of());
+    }
+
+    // Whether the text refers to a generated file, directly or through variables
+    private boolean namesFile(String text, int depth) {
+        if (depth > MAX_DEPTH) {
+            return false;
+        }
+        List<String> names;
+        if (isWholeReference(text)) {
+            names = List.of(text.substring(1));
+        } else if (Template.hasReferences(text)) {
+            names = template(text).names();
+        } else {
+            return false;
+        }
+        for (String name : names) {
+            if (variables.containsKey(name) ? namesFile(variables.get(name), depth + 1) : files.containsKey(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public String evaluateAsArgument(String varname, Map<String,File> testCaseFiles) {
-        if (varname.startsWith("$")) {
+        return evaluateAsArgument(varname, testCaseFiles, 0);
+    }
+
+    private String evaluateAsArgument(String varname, Map<String,File> testCaseFiles, int depth) {
+        if (isWholeReference(varname)) {
             varname = varname.substring(1);
             // Simple variable
             if (variables().containsKey(varname)) {
                 varname = variables().get(varname);
-                if (!varname.startsWith("$")) {
-                    return varname;
+                if (!isWholeReference(varname)) {
+                    return interpolate(varname, testCaseFiles, depth + 1);
                 }
                 varname = varname.substring(1);
             }
             // Generated file (which can also be specified as the variable value)
             // Note that we reuse the same file for the test suite
             if (files().containsKey(varname)) {
-                File file = testCaseFiles.computeIfAbsent(varname, name -> {
-                    Config.TestFile testFile = files().get(name);
-                    return testFile.asFile();
-                });
-                return file.getPath();
+                return file(varname, testCaseFiles).getPath();
             }
             // Confusion!
             String msg = String.format("Found variable named '%s' but no value", varname);
             throw new RuntimeException(msg);
         } else {
-            return varname;
+            return interpolate(varname, testCaseFiles, depth);
         }
     }
 
+    // "$name" as the entire value names a variable or file; "${name}" and "$${" are templates
+    private static boolean isWholeReference(String value) {
+        return value.startsWith("$") && !value.startsWith("${") && !value.startsWith("$${");
+    }
+
+    /**
+     * Replaces every ${name} in the text: a variable becomes its value (which may hold references of
+     * its own) and a file becomes its path. Text without references is returned as is.
+     */
+    public String interpolate(String text, Map<String,File> testCaseFiles) {
+        return interpolate(text, testCaseFiles, 0);
+    }
+
+    public List<String> interpolateAll(List<String> values, Map<String,File> testCaseFiles) {
+        if (values.stream().noneMatch(Template::hasReferences)) {
+            return values;
+        }
+        return values.stream().map(value -> interpolate(value, testCaseFiles)).toList();
+    }
+
+    // Untouched fragments keep their instance, and with it the automaton cached for the step
+    public Config.Fragments interpolate(Config.Fragments fragments, Map<String,File> testCaseFiles) {
+        List<String> required = interpolateAll(fragments.required(), testCaseFiles);
+        List<String> forbidden = interpolateAll(fragments.forbidden(), testCaseFiles);
+        if (required == fragments.required() && forbidden == fragments.forbidden()) {
+            return fragments;
+        }
+        return new Config.Fragments(required, forbidden);
+    }
+
+    private String interpolate(String text, Map<String,File> testCaseFiles, int depth) {
+        if (!Template.hasReferences(text)) {
+            return text;
+        }
+        return template(text).render(name -> resolve(name, testCaseFiles, depth));
+    }
+
+    // Text from outside the suite (or that failed to parse when it was built) is parsed as it is used
+    private Template template(String text) {
+        Template template = templates.get(text);
+        return template != null ? template : Template.parse(text);
+    }
+
+    private String resolve(String name, Map<String,File> testCaseFiles, int depth) {
+        if (depth > MAX_DEPTH) {
+            String msg = String.format("Variable '%s' is nested too deeply (does it refer to itself?)", name);
+            throw new RuntimeException(msg);
+        }
+        if (variables.containsKey(name)) {
+            return evaluateAsArgument(variables.get(name), testCaseFiles, depth + 1);
+        } else if (files.containsKey(name)) {
+            return file(name, testCaseFiles).getPath();
+        }
+        String msg = String.format("Found variable named '%s' but no value", name);
+        throw new RuntimeException(msg);
+    }
+
+    private File file(String name, Map<String,File> testCaseFiles) {
+        return testCaseFiles.computeIfAbsent(name, n -> files().get(n).asFile());
+    }
+
+    // Like evaluateAsBytes, but files and generated data are streamed rather than read into memory
+    public InputStream evaluateAsStream(String varname, TestHarness.Settings settings, Charset charset) throws IOException {
+        return evaluateAsStream(varname, settings, charset, new HashMap<>());
+    }
+
+    public InputStream evaluateAsStream(String varname, TestHarness.Settings settings, Charset charset,
+                                        Map<String,File> testCaseFiles) throws IOException {
+        if (varname.startsWith("file:")) {
+            final Path filePath = Path.of(interpolate(varname.substring(5), testCaseFiles));
+            return Files.newInputStream(settings.baseDirectory().resolve(filePath));
+        } else if (varname.startsWith("generate:")) {
+            return GeneratedInputStream.parse(interpolate(varname, testCaseFiles), charset);
+        } else if (isWholeReference(varname)) {
+            String name = varname.substring(1);
+            if (variables.containsKey(name)) {
+                String value = variables.get(name);
+                name = isWholeReference(value) ? value.substring(1) : null;
+            }
+            if (name != null && files.containsKey(name) && files.get(name).isGenerated()) {
+                return files.get(name).contentAsStream(charset);
+            }
+        }
+        return new ByteArrayInputStream(evaluateAsBytes(varname, settings, charset, testCaseFiles));
+    }
+
+    // The command as configured for this step, with variables and files resolved in env and cwd; a relative
+    // cwd is taken from the base directory, like 'file:' references
+    public Config.Command commandFor(Config.Step step, TestHarness.Settings settings, Map<String,File> testCaseFiles) {
+        final String cmd = step.command().getFirst();
+        if (!commands.containsKey(cmd)) {
+            String msg = String.format("Expecting command named '%s' but it does not exist", cmd);
+            throw new RuntimeException(msg);
+        }
+        Config.Command command = commands.get(cmd).forStep(step.env(), step.cwd(), step.limits());
+        if (command.env().isEmpty() && command.cwd() == null) {
+            return command;
+        }
+        Map<String,String> env = new LinkedHashMap<>();
+        command.env().forEach((k, v) -> env.put(k, evaluateAsArgument(v, testCaseFiles)));
+        String cwd = command.cwd() == null ? null
+                : settings.baseDirectory().resolve(evaluateAsArgument(command.cwd(), testCaseFiles)).toString();
+        return new Config.Command(command.mainClass(), command.executable(), command.systemExit(), env, cwd,
+                command.limits());
+    }
+
     public byte[] evaluateAsBytes(String varname, TestHarness.Settings settings) throws IOException {
-        if (varname.startsWith("$")) {
+        return evaluateAsBytes(varname, settings, Charset.defaultCharset());
+    }
+
+    public byte[] evaluateAsBytes(String varname, TestHarness.Settings settings, Charset charset) throws IOException {
+        return evaluateAsBytes(varname, settings, charset, new HashMap<>());
+    }
+
+    public byte[] evaluateAsBytes(String varname, TestHarness.Settings settings, Charset charset,
+                                  Map<String,File> testCaseFiles) throws IOException {
+        if (isWholeReference(varname)) {
             varname = varname.substring(1);
             // Simple variable
             if (variables().containsKey(varname)) {
                 varname = variables().get(varname);
-                if (!varname.startsWith("$")) {
-                    return varname.getBytes();
+                if (!isWholeReference(varname)) {
+                    return interpolate(varname, testCaseFiles).getBytes(charset);
                 }
                 varname = varname.substring(1);
             }
@@ -106,18 +342,18 @@ public record TestSuite(Map<String, Config.Command> commands,
             // Note that we reuse the same file for the test suite
             if (files.containsKey(varname)) {
                 Config.TestFile testFile = files.get(varname);
-                return testFile.contentAsBytes();
+                return testFile.contentAsBytes(charset);
             }
             // Confusion!
             String msg = String.format("Found variable named '%s' but no value", varname);
             throw new RuntimeException(msg);
         } else if (varname.startsWith("file:")) {
             // If Settings is configured properly, we *should* have consistent file locations:
-            final Path filePath = Path.of(varname.substring(5));
+            final Path filePath = Path.of(interpolate(varname.substring(5), testCaseFiles));
             final Path combinedPath = settings.baseDirectory().resolve(filePath);
             return Files.readAllBytes(combinedPath);
         } else {
-            return varname.getBytes();
+            return interpolate(varname, testCaseFiles).getBytes(charset);
         }
     }
 
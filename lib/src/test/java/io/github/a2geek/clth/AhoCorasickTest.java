@@ -0,0 +1,74 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AhoCorasickTest {
+    private static AhoCorasick of(String... patterns) {
+        return new AhoCorasick(List.of(patterns).stream().map(p -> p.getBytes(StandardCharsets.UTF_8)).toList());
+    }
+
+    private static BitSet bits(int... indexes) {
+        BitSet bits = new BitSet();
+        for (int i : indexes) {
+            bits.set(i);
+        }
+        return bits;
+    }
+
+    @Test
+    public void testOverlappingPatterns() {
+        // The classic example: "ushers" contains "she", "he" and "hers" but not "his"
+        AhoCorasick matcher = of("he", "she", "his", "hers");
+        assertEquals(bits(0, 1, 3), matcher.scan("ushers".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testBinaryAndEmptyPatterns() {
+        AhoCorasick matcher = new AhoCorasick(List.of(new byte[] { 0x00, (byte)0xff }, new byte[0], new byte[] { 0x7f }));
+        assertEquals(bits(0, 1), matcher.scan(new byte[] { 0x10, 0x00, (byte)0xff, 0x00 }));
+        assertEquals(bits(1), matcher.scan(new byte[0]));
+    }
+
+    @Test
+    public void testLength() {
+        AhoCorasick matcher = of("abc");
+        byte[] text = "xxabcxx".getBytes(StandardCharsets.UTF_8);
+        assertEquals(bits(0), matcher.scan(text, text.length));
+        assertEquals(bits(), matcher.scan(text, 4));
+    }
+
+    @Test
+    public void testFragments() {
+        Config.Fragments fragments = new Config.Fragments(List.of("Usage:", "--help"), List.of("Exception"));
+        assertSame(fragments.matcher(StandardCharsets.UTF_8), fragments.matcher(StandardCharsets.UTF_8));
+
+        List<String> errors = new ArrayList<>();
+        TestHarness.handleFragments("stdout", fragments, StandardCharsets.UTF_8,
+                "Usage: cmd\nNullPointerException".getBytes(StandardCharsets.UTF_8), errors);
+        assertEquals(List.of("'stdout' is missing [--help]", "'stdout' contains forbidden [Exception]"), errors);
+    }
+}
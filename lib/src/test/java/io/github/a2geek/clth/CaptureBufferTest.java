@@ -0,0 +1,86 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CaptureBufferTest {
+    @Test
+    public void testInMemory() throws IOException {
+        try (CaptureBuffer buffer = new CaptureBuffer(64, CaptureBuffer.UNLIMITED)) {
+            buffer.write("hello".getBytes());
+            assertFalse(buffer.isSpilled());
+            assertArrayEquals("hello".getBytes(), buffer.toByteArray());
+            assertTrue(buffer.contentEquals("hello".getBytes()));
+            assertFalse(buffer.contentEquals("hellO".getBytes()));
+        }
+    }
+
+    @Test
+    public void testSpillsToDisk() throws IOException {
+        byte[] data = new byte[10_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        try (CaptureBuffer buffer = new CaptureBuffer(1000, CaptureBuffer.UNLIMITED)) {
+            for (int i = 0; i < data.length; i += 700) {
+                buffer.write(data, i, Math.min(700, data.length - i));
+            }
+            assertTrue(buffer.isSpilled());
+            assertEquals(data.length, buffer.size());
+            assertTrue(buffer.contentEquals(data));
+            try (InputStream inputStream = buffer.inputStream()) {
+                assertArrayEquals(data, inputStream.readAllBytes());
+            }
+            data[5000]++;
+            assertFalse(buffer.contentEquals(data));
+        }
+    }
+
+    @Test
+    public void testMaxOutput() throws IOException {
+        try (CaptureBuffer buffer = new CaptureBuffer(4, 10)) {
+            buffer.write("12345".getBytes());
+            assertThrows(StopProcessException.class, () -> buffer.write("6789012".getBytes()));
+            assertTrue(buffer.limitExceeded());
+            // Anything after the limit is dropped
+            buffer.write("more".getBytes());
+            assertArrayEquals("1234567890".getBytes(), buffer.toByteArray());
+        }
+    }
+
+    @Test
+    public void testHeadAndContains() throws IOException {
+        try (CaptureBuffer buffer = new CaptureBuffer(8, CaptureBuffer.UNLIMITED)) {
+            buffer.write("0123456789abcdef".getBytes());
+            assertTrue(buffer.isSpilled());
+            assertArrayEquals("0123".getBytes(), buffer.head(4));
+            assertArrayEquals("0123456789".getBytes(), buffer.head(10));
+            assertArrayEquals("0123456789abcdef".getBytes(), buffer.head(100));
+            // Across the memory and spill boundary
+            assertTrue(buffer.contains("6789ab".getBytes()));
+            assertTrue(buffer.contains("".getBytes()));
+            assertFalse(buffer.contains("fedc".getBytes()));
+        }
+    }
+}
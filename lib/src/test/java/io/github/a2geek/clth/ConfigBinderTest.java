@@ -0,0 +1,195 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.RecordComponent;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConfigBinderTest {
+    private static final String yaml =
+                """
+                commands:
+                  cli:
+                    main-class: io.github.a2geek.Cli
+                    system-exit: true
+                  tool:
+                    executable: build/tool*
+                    env: { LANG: C, DEPTH: 3 }
+                    cwd: /tmp
+                    limits:
+                      address-space: 512m
+                      cpu-seconds: 10
+                files:
+                  text:
+                    type: text
+                    content: HELLO
+                    prefix: pre
+                    suffix: .txt
+                  big:
+                    type: random
+                    size: 1MB
+                    seed: 42
+                  rows:
+                    type: lines
+                    content: "row {n}"
+                    count: 100
+                  scalars:
+                    type: text
+                    content: 1.10
+                    prefix: 0x10
+                    suffix: 1e3
+                tests:
+                  - name: everything
+                    variables:
+                      word: [ one, two ]
+                      number: 5
+                      hex: 0x10
+                      version: 1.10
+                      flag: true
+                      nested: { a: [ 1.5, x ] }
+                    steps:
+                      - command: cli one $word
+                        stdin: file:input.txt
+                        stdout: |
+                          expected
+                        stderr: ""
+                        criteria:
+                          match: regex
+                          whitespace: trim
+                          charset: ISO-8859-1
+                        rc: 2
+                        stdout-fragments:
+                          required: [ a, b ]
+                        stderr-fragments:
+                          forbidden: [ Exception ]
+                        expect-lines: [ "^ready" ]
+                        reject-lines: [ error ]
+                        max-output: 10MB
+                        env: { MODE: fast }
+                        cwd: $dir
+                        limits: { open-files: 64 }
+                        profile-dump: profile.csv
+                        concurrency: 4
+                      - command: [ tool, "--flag", 12 ]
+                        stdin-script:
+                          - wait-for: "name\\\\? "
+                            send: "bob\\n"
+                            timeout: 2s
+                          - delay: 250ms
+                            send: generate:pattern:1k:ab
+                      - pipe:
+                          - command: tool export
+                          - command: tool count
+                            rc: 1
+                            stderr: "warn"
+                        stdout: "8"
+                  - name: minimal
+                    steps:
+                      - command: cli
+                        stdout: 007
+                        stderr: true
+                  - name: empty
+                """;
+
+    @Test
+    public void testMatchesDataBinding() throws JsonProcessingException {
+        ObjectMapper mapper = new YAMLMapper();
+        mapper.registerModule(new Jdk8Module());
+        Config expected = mapper.readValue(yaml, Config.class);
+
+        assertEquals(expected, ConfigBinder.load(yaml));
+    }
+
+    @Test
+    public void testCoversEveryComponent() throws Exception {
+        // The document above sets every component of every Config record somewhere, so the comparison with
+        // data binding checks every property name the binder has to spell out
+        Map<Class<?>,Set<String>> seen = new HashMap<>();
+        collect(ConfigBinder.load(yaml), seen);
+        for (Map.Entry<Class<?>,Set<String>> entry : seen.entrySet()) {
+            Set<String> all = Arrays.stream(entry.getKey().getRecordComponents())
+                    .map(RecordComponent::getName)
+                    .collect(Collectors.toSet());
+            assertEquals(all, entry.getValue(), entry.getKey().getSimpleName());
+        }
+        Set<Class<?>> records = Arrays.stream(Config.class.getDeclaredClasses())
+                .filter(Class::isRecord)
+                .collect(Collectors.toSet());
+        records.add(Config.class);
+        assertEquals(records, seen.keySet());
+    }
+
+    private static void collect(Object value, Map<Class<?>,Set<String>> seen) throws Exception {
+        if (value instanceof Record record) {
+            Set<String> names = seen.computeIfAbsent(record.getClass(), c -> new HashSet<>());
+            for (RecordComponent component : record.getClass().getRecordComponents()) {
+                Object child = component.getAccessor().invoke(record);
+                if (isSet(child)) {
+                    names.add(component.getName());
+                }
+                collect(child, seen);
+            }
+        } else if (value instanceof Collection<?> collection) {
+            for (Object child : collection) {
+                collect(child, seen);
+            }
+        } else if (value instanceof Map<?,?> map) {
+            for (Object child : map.values()) {
+                collect(child, seen);
+            }
+        }
+    }
+
+    private static boolean isSet(Object value) {
+        return value != null && !Boolean.FALSE.equals(value) && !Integer.valueOf(0).equals(value)
+                && !(value instanceof Collection<?> c && c.isEmpty()) && !(value instanceof Map<?,?> m && m.isEmpty());
+    }
+
+    @Test
+    public void testMatchesDataBinding_emptySections() throws JsonProcessingException {
+        ObjectMapper mapper = new YAMLMapper();
+        final String sparse = "tests:\n  - name: only\n";
+        assertEquals(mapper.readValue(sparse, Config.class), ConfigBinder.load(sparse));
+    }
+
+    @Test
+    public void testErrors() {
+        JsonProcessingException ex = assertThrows(JsonProcessingException.class,
+                () -> ConfigBinder.load("tests:\n  - name: x\n    steps:\n      - command: a\n        stdot: b\n"));
+        assertTrue(ex.getMessage().contains("'stdot' at 'tests[0].steps[0]'"), ex.getMessage());
+
+        ex = assertThrows(JsonProcessingException.class,
+                () -> ConfigBinder.load("files:\n  f:\n    type: nope\n"));
+        assertTrue(ex.getMessage().contains("'nope' at 'files.f.type'"), ex.getMessage());
+
+        ex = assertThrows(JsonProcessingException.class,
+                () -> ConfigBinder.load("tests:\n  - steps:\n      - rc: one\n"));
+        assertTrue(ex.getMessage().contains("tests[0].steps[0].rc"), ex.getMessage());
+
+        assertThrows(JsonProcessingException.class, () -> ConfigBinder.load(""));
+    }
+}
@@ -20,8 +20,16 @@ package io.github.a2geek.clth;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -58,6 +66,36 @@ public class ConfigTest {
         assertTrue(Config.MatchType.regex.matches(regex, actual));
     }
 
+    @Test
+    public void testMatch_bytes() {
+        final byte[] binary = { 0x00, (byte)0xff, 0x20, 0x58, (byte)0xfc, 0x60 };
+        assertTrue(Config.MatchType.exact.matches(binary, binary.clone()));
+        assertFalse(Config.MatchType.exact.matches(binary, new byte[] { 0x00, (byte)0xff }));
+        assertTrue(Config.MatchType.contains.matches(new byte[] { 0x58, (byte)0xfc }, binary));
+        assertFalse(Config.MatchType.contains.matches(new byte[] { (byte)0xfc, 0x58 }, binary));
+        assertTrue(Config.MatchType.contains.matches(new byte[0], binary));
+        assertTrue(Config.MatchType.ignore.matches(binary, new byte[0]));
+        assertThrows(UnsupportedOperationException.class, () -> Config.MatchType.regex.matches(binary, binary));
+    }
+
+    @Test
+    public void testLoad_criteriaCharset() throws JsonProcessingException {
+        final String document = """
+            tests:
+              - name: charset
+                steps:
+                  - command: cmd
+                    criteria:
+                      charset: ISO-8859-1
+                  - command: cmd
+            """;
+        Config config = Config.load(document);
+        List<Config.Step> steps = config.tests().getFirst().steps();
+        assertEquals(StandardCharsets.ISO_8859_1, steps.get(0).criteria().charset());
+        assertEquals(StandardCharsets.UTF_8, steps.get(1).criteria().charset());
+        assertTrue(steps.get(1).criteria().isByteComparable());
+    }
+
     @Test
     public void testWhitespace_trim() {
         final Config.Whitespace whitespace = Config.Whitespace.trim;
@@ -100,6 +138,47 @@ public class ConfigTest {
         assertArrayEquals(new byte[] { 0x20, 0x58, (byte)0xfc, 0x60 }, binFile.contentAsBytes());
     }
 
+    @Test
+    public void testTestFile_generated() throws IOException {
+        final String document = """
+            files:
+              noise:
+                type: random
+                size: 64k
+                seed: 7
+              abc:
+                type: repeat
+                content: abc
+                count: 3
+              numbered:
+                type: lines
+                content: "row {n}"
+                count: 3
+            """;
+        Config config = Config.load(document);
+        assertArrayEquals("abcabcabc".getBytes(), config.files().get("abc").contentAsBytes());
+        assertArrayEquals("row 1\nrow 2\nrow 3\n".getBytes(), config.files().get("numbered").contentAsBytes());
+
+        // Generated once; test cases share it through read-only links, or get a copy where a link could be written
+        Config.TestFile noise = config.files().get("noise");
+        File file = noise.asFile();
+        assertEquals(64 * 1024, file.length());
+        assertArrayEquals(GeneratedInputStream.random(64 * 1024, 7).readAllBytes(), Files.readAllBytes(file.toPath()));
+        File other = noise.asFile();
+        assertNotEquals(file, other);
+        if (Files.isWritable(file.toPath())) {
+            Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+            assertEquals(64 * 1024, other.length());
+        } else {
+            assertTrue(Files.isSameFile(file.toPath(), other.toPath()));
+        }
+        file.delete();
+        other.delete();
+        File again = noise.asFile();
+        assertEquals(64 * 1024, again.length());
+        again.delete();
+    }
+
     @Test
     public void testLoad_commandAsString() throws JsonProcessingException {
         final String document = """
@@ -145,4 +224,62 @@ public class ConfigTest {
         assertEquals("argument 2", command.removeFirst());
         assertEquals("argument 3", command.removeFirst());
     }
+
+    @Test
+    public void testParseSize() {
+        assertEquals(512, Config.parseSize("512"));
+        assertEquals(64 * 1024, Config.parseSize("64k"));
+        assertEquals(10L * 1024 * 1024, Config.parseSize("10MB"));
+        assertEquals(1L << 30, Config.parseSize("1 GiB"));
+        assertThrows(IllegalArgumentException.class, () -> Config.parseSize("lots"));
+    }
+
+    @Test
+    public void testParseDuration() {
+        assertEquals(Duration.ofMillis(250), Config.parseDuration("250ms"));
+        assertEquals(Duration.ofMillis(75), Config.parseDuration("75"));
+        assertEquals(Duration.ofSeconds(2), Config.parseDuration("2s"));
+        assertEquals(Duration.ofMinutes(1), Config.parseDuration("1m"));
+        assertThrows(IllegalArgumentException.class, () -> Config.parseDuration("soon"));
+    }
+
+    @Test
+    public void testCommandForStep() throws JsonProcessingException {
+        final String document = """
+            commands:
+              cli:
+                executable: ./cli
+                env:
+                  A: one
+                  B: two
+                limits:
+                  open-files: 64
+                  address-space: 512MB
+            tests:
+              - name: environment
+                variables:
+                  dir: /tmp
+                steps:
+                  - command: cli
+                    env:
+                      B: $dir
+                    cwd: $dir
+                    limits:
+                      cpu-seconds: 5
+                      open-files: 32
+            """;
+        TestSuite testSuite = TestSuite.build(Config.load(document)).findFirst().orElseThrow();
+        TestHarness.Settings settings = TestHarness.settings().baseDirectory(Path.of("/base")).get();
+        Config.Command command = testSuite.commandFor(testSuite.steps().getFirst(), settings, new HashMap<>());
+        assertEquals(Map.of("A", "one", "B", "/tmp"), command.env());
+        assertEquals("/tmp", command.cwd());
+        assertEquals(List.of("-v 524288", "-t 5", "-n 32"), command.limits().ulimitArguments());
+        assertTrue(command.hasEnvironment());
+        assertFalse(new Config.Command(null, "./cli", false).hasEnvironment());
+
+        // A relative cwd is resolved against the base directory, not the harness's working directory
+        Config.Step relative = new Config.Step(List.of("cli"), null, null, null, null, 0, null, null, null, null,
+                null, null, null, "work", null, null, null, 0);
+        assertEquals(Path.of("/base/work").toString(), testSuite.commandFor(relative, settings, new HashMap<>()).cwd());
+    }
 }
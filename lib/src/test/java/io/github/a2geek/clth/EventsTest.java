@@ -0,0 +1,79 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventsTest {
+    private static final String yaml =
+            """
+            commands:
+              cli:
+                main-class: unused
+            tests:
+              - name: greeting
+                variables:
+                  who: world
+                steps:
+                  - command: cli $who
+                    stdout: "hello world"
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testHarnessEvents() throws Exception {
+        Path file = tempDir.resolve("events.jfr");
+        try (Recording recording = new Recording()) {
+            Events.ALL.forEach(recording::enable);
+            recording.start();
+            TestHarness.TestRunner runner = (command, parameters, stdin, stdout, stderr) ->
+                    TestHarnessTest.ECHO.execute(command, List.of("goodbye", "world"), stdin, stdout, stderr);
+            assertFalse(TestHarnessTest.run(yaml, runner).getFirst().passed());
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Set<String> names = events.stream().map(e -> e.getEventType().getName()).collect(Collectors.toSet());
+        assertEquals(Set.of("io.github.a2geek.clth.ConfigLoad", "io.github.a2geek.clth.SuiteExpand",
+                "io.github.a2geek.clth.StepExecute", "io.github.a2geek.clth.OutputMatch",
+                "io.github.a2geek.clth.Diff"), names);
+
+        RecordedEvent match = events.stream()
+                .filter(e -> e.getEventType().getName().endsWith("OutputMatch"))
+                .findFirst().orElseThrow();
+        assertEquals("greeting", match.getString("testName"));
+        assertEquals("{who=world}", match.getString("variables"));
+        assertEquals(11, match.getLong("expectedSize"));
+        assertEquals(13, match.getLong("actualSize"));
+        assertFalse(match.getBoolean("matched"));
+    }
+}
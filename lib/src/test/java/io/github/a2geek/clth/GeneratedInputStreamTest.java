@@ -0,0 +1,55 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GeneratedInputStreamTest {
+    @Test
+    public void testPattern() throws IOException {
+        InputStream inputStream = GeneratedInputStream.parse("generate:pattern:10:abc", StandardCharsets.UTF_8);
+        assertEquals("abcabcabca", new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testRandomIsReproducible() throws IOException {
+        byte[] first = GeneratedInputStream.parse("generate:random:1k:42", StandardCharsets.UTF_8).readAllBytes();
+        assertEquals(1024, first.length);
+        // Reading in odd-sized pieces yields the same bytes
+        InputStream inputStream = GeneratedInputStream.random(1024, 42);
+        byte[] second = new byte[1024];
+        for (int off = 0; off < second.length; off += 7) {
+            inputStream.read(second, off, Math.min(7, second.length - off));
+        }
+        assertArrayEquals(first, second);
+        assertFalse(Arrays.equals(first, GeneratedInputStream.random(1024, 43).readAllBytes()));
+    }
+
+    @Test
+    public void testInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> GeneratedInputStream.parse("generate:zeros:1k:0", StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> GeneratedInputStream.parse("generate:random:1k", StandardCharsets.UTF_8));
+    }
+}
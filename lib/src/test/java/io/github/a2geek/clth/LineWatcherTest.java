@@ -0,0 +1,72 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LineWatcherTest {
+    @Test
+    public void testSatisfiedStopsOnLastLine() throws IOException {
+        ByteArrayOutputStream capture = new ByteArrayOutputStream();
+        LineWatcher watcher = new LineWatcher(capture, List.of("^start", "done$"), List.of(), StandardCharsets.UTF_8);
+        watcher.write("noise\nstarting up\nwor".getBytes());
+        assertEquals(LineWatcher.State.WATCHING, watcher.state());
+        // Lines split across writes are reassembled
+        assertThrows(StopProcessException.class, () -> watcher.write("k done\nmore\n".getBytes()));
+        assertEquals(LineWatcher.State.SATISFIED, watcher.state());
+        // Output keeps flowing to the capture after the decision
+        watcher.write("trailing\n".getBytes());
+        assertEquals("noise\nstarting up\nwork done\nmore\ntrailing\n", capture.toString());
+
+        List<String> errors = new ArrayList<>();
+        watcher.addErrors("stdout", errors);
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void testOrderMatters() throws IOException {
+        LineWatcher watcher = new LineWatcher(OutputStream.nullOutputStream(), List.of("two", "one"), List.of(), StandardCharsets.UTF_8);
+        watcher.write("one\ntwo\n".getBytes());
+        watcher.finish();
+        List<String> errors = new ArrayList<>();
+        watcher.addErrors("stdout", errors);
+        assertEquals(List.of("'stdout' never matched line 2 of expect-lines /one/"), errors);
+    }
+
+    @Test
+    public void testRejectedAndPartialLine() throws IOException {
+        LineWatcher watcher = new LineWatcher(OutputStream.nullOutputStream(), List.of(), List.of("(?i)exception"), StandardCharsets.UTF_8);
+        watcher.write("ok\r\nNullPointerException".getBytes());
+        assertEquals(LineWatcher.State.WATCHING, watcher.state());
+        watcher.finish();
+        assertEquals(LineWatcher.State.REJECTED, watcher.state());
+        List<String> errors = new ArrayList<>();
+        watcher.addErrors("stdout", errors);
+        assertEquals(List.of("'stdout' has rejected line 'NullPointerException'"), errors);
+    }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadSummaryTest {
+    @Test
+    public void testPercentiles() {
+        List<Duration> latencies = IntStream.rangeClosed(1, 20).map(n -> 21 - n).mapToObj(Duration::ofMillis).toList();
+        LoadSummary load = new LoadSummary(Duration.ofSeconds(2), latencies);
+        assertEquals(20, load.instances());
+        assertEquals(10.0, load.throughput(), 0.001);
+        assertEquals(Duration.ofMillis(1), load.percentile(0));
+        assertEquals(Duration.ofMillis(10), load.percentile(50));
+        assertEquals(Duration.ofMillis(19), load.percentile(95));
+        assertEquals(Duration.ofMillis(20), load.percentile(100));
+    }
+
+    @Test
+    public void testEmpty() {
+        LoadSummary load = new LoadSummary(Duration.ZERO, List.of());
+        assertEquals(0.0, load.throughput());
+        assertEquals(Duration.ZERO, load.percentile(50));
+    }
+}
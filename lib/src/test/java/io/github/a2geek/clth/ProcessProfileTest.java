@@ -0,0 +1,78 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class ProcessProfileTest {
+    private static final String STATUS = """
+            Name:\tsome cli
+            VmHWM:\t   20480 kB
+            VmRSS:\t   10240 kB
+            Threads:\t3
+            voluntary_ctxt_switches:\t12
+            nonvoluntary_ctxt_switches:\t4
+            """;
+    private static final String STAT = "1234 (some cli) R 1 1234 1234 0 -1 4194304 100 0 0 0 25 7 0 0 20 0 3 0";
+    private static final String IO = """
+            rchar: 5000
+            wchar: 300
+            read_bytes: 4096
+            write_bytes: 8192
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testParse() {
+        ProcessProfile.Sample sample = ProcessProfile.parse(5, STATUS, STAT, IO);
+        assertEquals(new ProcessProfile.Sample(5, 10240, 20480, 3, 250, 70, 12, 4, 4096, 8192), sample);
+        // io may be unreadable
+        assertEquals(0, ProcessProfile.parse(5, STATUS, STAT, "").readBytes());
+    }
+
+    @Test
+    public void testSampleThisProcess() throws IOException, InterruptedException {
+        assumeTrue(Files.exists(Path.of("/proc/self/status")));
+        ProcessProfile profile = new ProcessProfile(Duration.ofMillis(5));
+        profile.start(ProcessHandle.current().pid());
+        Thread.sleep(50);
+        profile.stop();
+        ProcessProfile.Summary summary = profile.summary();
+        assertNotNull(summary);
+        assertTrue(summary.peakRssKb() > 0);
+        assertTrue(summary.peakThreads() > 1);
+
+        Path csv = tempDir.resolve("profile.csv");
+        profile.dump(csv);
+        List<String> lines = Files.readAllLines(csv);
+        assertEquals(summary.samples() + 1, lines.size());
+        assertTrue(lines.getFirst().startsWith("elapsed_ms,rss_kb"));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResultWriterTest {
+    private static final String yaml =
+                """
+                commands:
+                  echo:
+                    executable: echo
+                tests:
+                  - name: passes
+                    variables:
+                      word: [ one, two ]
+                    steps:
+                      - command: echo $word
+                        stdout: $word
+                  - name: fails <badly>
+                    steps:
+                      - command: echo hello
+                        stdout: goodbye
+                """;
+
+    @TempDir
+    Path tempDir;
+
+    private List<SuiteResult> results() throws IOException {
+        // Fake runner: echo the parameters to stdout
+        TestHarness.TestRunner runner = (command, parameters, stdin, stdout, stderr) -> {
+            new PrintStream(stdout, true).print(String.join(" ", parameters));
+            return 0;
+        };
+        TestHarness.Settings settings = TestHarness.settings()
+                .out(new PrintStream(PrintStream.nullOutputStream()))
+                .get();
+        return TestSuite.build(Config.load(yaml)).map(t -> TestHarness.execute(t, runner, settings)).toList();
+    }
+
+    @Test
+    public void testExecute() throws IOException {
+        List<SuiteResult> results = results();
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).passed());
+        assertTrue(results.get(1).passed());
+        assertFalse(results.get(2).passed());
+        assertEquals(List.of("'stdout' does not match"), results.get(2).errors());
+        assertNotNull(results.get(2).steps().getFirst().diff());
+    }
+
+    @Test
+    public void testJUnitXml_validAfterEverySuite() throws Exception {
+        Path path = tempDir.resolve("results.xml");
+        try (ResultWriter writer = new JUnitXmlResultWriter(path)) {
+            assertEquals(0, parse(path).getElementsByTagName("testsuite").getLength());
+            int count = 0;
+            for (SuiteResult result : results()) {
+                writer.write(result);
+                count++;
+                assertEquals(count, parse(path).getElementsByTagName("testsuite").getLength());
+            }
+        }
+        Document document = parse(path);
+        assertEquals(1, document.getElementsByTagName("failure").getLength());
+
+        // Merging two shard files keeps every suite
+        Path merged = tempDir.resolve("merged.xml");
+        JUnitXmlResultWriter.merge(List.of(path, path), merged);
+        assertEquals(6, parse(merged).getElementsByTagName("testsuite").getLength());
+    }
+
+    @Test
+    public void testJsonLines() throws IOException {
+        Path path = tempDir.resolve("results.jsonl");
+        try (ResultWriter writer = new JsonLinesResultWriter(path)) {
+            for (SuiteResult result : results()) {
+                writer.write(result);
+            }
+        }
+        List<String> lines = Files.readAllLines(path);
+        assertEquals(3, lines.size());
+        JsonNode node = new ObjectMapper().readTree(lines.get(2));
+        assertEquals("fails <badly>", node.get("name").asText());
+        assertFalse(node.get("passed").asBoolean());
+        assertEquals(0, node.get("steps").get(0).get("returnCode").asInt());
+    }
+
+    private static Document parse(Path path) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(path.toFile());
+    }
+}
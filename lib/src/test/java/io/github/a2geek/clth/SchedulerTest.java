@@ -0,0 +1,76 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchedulerTest {
+    private static final String yaml =
+                """
+                tests:
+                  - name: fast
+                  - name: slow
+                  - name: unknown
+                  - name: medium
+                """;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testLongestFirst() throws JsonProcessingException {
+        List<TestSuite> testSuites = TestSuite.build(Config.load(yaml)).toList();
+        DurationStats stats = new DurationStats();
+        stats.record(testSuites.get(0), Duration.ofMillis(10));
+        stats.record(testSuites.get(1), Duration.ofMillis(1000));
+        stats.record(testSuites.get(3), Duration.ofMillis(400));
+
+        List<String> names = Scheduler.longestFirst(testSuites, stats).stream().map(TestSuite::testName).toList();
+        // 'unknown' is estimated at the average (470ms)
+        assertEquals(List.of("slow", "unknown", "medium", "fast"), names);
+    }
+
+    @Test
+    public void testIdealMakespan() {
+        assertEquals(10, Scheduler.idealMakespan(List.of(10L, 1L, 1L), 2));
+        assertEquals(6, Scheduler.idealMakespan(List.of(4L, 4L, 4L), 2));
+        assertEquals(0, Scheduler.idealMakespan(List.of(), 4));
+    }
+
+    @Test
+    public void testStatsRoundTrip() throws IOException {
+        TestSuite testSuite = TestSuite.build(Config.load(yaml)).findFirst().orElseThrow();
+        DurationStats stats = new DurationStats();
+        stats.record(testSuite, Duration.ofMillis(1234));
+        Path path = tempDir.resolve("stats.properties");
+        stats.save(path);
+
+        DurationStats loaded = DurationStats.load(path);
+        assertEquals(1234, loaded.lookup(testSuite).orElseThrow());
+        assertTrue(DurationStats.load(tempDir.resolve("missing")).isEmpty());
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScriptedInputStreamTest {
+    private static ScriptedInputStream script(Config.StdinChunk... chunks) {
+        return new ScriptedInputStream(List.of(chunks), StandardCharsets.UTF_8,
+                value -> new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testWaitsForPrompt() throws Exception {
+        ScriptedInputStream script = script(
+                new Config.StdinChunk("first\n", null, null, null),
+                new Config.StdinChunk("second\n", null, "name\\?", "5s"));
+        OutputStream monitor = script.monitor(OutputStream.nullOutputStream());
+        CompletableFuture<byte[]> input = CompletableFuture.supplyAsync(() -> {
+            try {
+                return script.readAllBytes();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(input.isDone());
+        // A prompt without a newline still counts
+        monitor.write("What is your name? ".getBytes());
+        assertEquals("first\nsecond\n", new String(input.get(5, TimeUnit.SECONDS), StandardCharsets.UTF_8));
+        assertNull(script.failure());
+    }
+
+    @Test
+    public void testTimeout() {
+        ScriptedInputStream script = script(new Config.StdinChunk("never\n", null, "ready", "50ms"));
+        script.monitor(OutputStream.nullOutputStream());
+        assertThrows(IOException.class, script::readAllBytes);
+        assertEquals("Timed out after PT0.05S waiting for /ready/", script.failure());
+    }
+
+    @Test
+    public void testDelay() throws IOException {
+        InputStream script = script(new Config.StdinChunk("a", "100ms", null, null), new Config.StdinChunk("b", null, null, null));
+        long start = System.nanoTime();
+        assertEquals("ab", new String(script.readAllBytes(), StandardCharsets.UTF_8));
+        assertTrue(System.nanoTime() - start >= 100_000_000L);
+    }
+}
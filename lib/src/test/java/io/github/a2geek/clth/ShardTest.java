@@ -0,0 +1,80 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardTest {
+    private static final String yaml =
+                """
+                tests:
+                  - name: a test
+                    variables:
+                      n: [ 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 ]
+                  - name: another test
+                """;
+
+    @Test
+    public void testParse() {
+        assertEquals(new Shard(2, 4), Shard.parse("2/4"));
+        assertThrows(IllegalArgumentException.class, () -> Shard.parse("0/4"));
+        assertThrows(IllegalArgumentException.class, () -> Shard.parse("5/4"));
+        assertThrows(IllegalArgumentException.class, () -> Shard.parse("2"));
+    }
+
+    @Test
+    public void testSelect_hashCoversEverySuiteOnce() throws JsonProcessingException {
+        List<TestSuite> testSuites = TestSuite.build(Config.load(yaml)).toList();
+        assertPartition(testSuites, new DurationStats(), 3);
+    }
+
+    @Test
+    public void testSelect_weightedBalancesDurations() throws JsonProcessingException {
+        List<TestSuite> testSuites = TestSuite.build(Config.load(yaml)).toList();
+        DurationStats stats = new DurationStats();
+        for (int i = 0; i < testSuites.size(); i++) {
+            stats.record(testSuites.get(i), Duration.ofMillis(100L * (i + 1)));
+        }
+        assertPartition(testSuites, stats, 3);
+
+        // LPT keeps every shard within the largest single suite of the others
+        long[] loads = new long[3];
+        for (int i = 0; i < 3; i++) {
+            loads[i] = new Shard(i + 1, 3).select(testSuites, stats).stream()
+                    .mapToLong(t -> stats.lookup(t).orElseThrow())
+                    .sum();
+        }
+        long spread = Math.max(loads[0], Math.max(loads[1], loads[2])) - Math.min(loads[0], Math.min(loads[1], loads[2]));
+        assertTrue(spread <= 1300, "spread was " + spread);
+    }
+
+    private static void assertPartition(List<TestSuite> testSuites, DurationStats stats, int count) {
+        List<String> seen = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            new Shard(i, count).select(testSuites, stats).forEach(t -> seen.add(t.id()));
+        }
+        assertEquals(testSuites.stream().map(TestSuite::id).sorted().toList(), seen.stream().sorted().toList());
+    }
+}
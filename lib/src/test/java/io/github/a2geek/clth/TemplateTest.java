@@ -0,0 +1,65 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TemplateTest {
+    @Test
+    public void testRender() {
+        Map<String,String> values = Map.of("a", "1", "b", "two");
+        Template template = Template.parse("x=${a}, y=${ b }${a}!");
+        assertEquals(List.of("a", "b", "a"), template.names());
+        assertEquals("x=1, y=two1!", template.render(values::get));
+        assertEquals("1", Template.parse("${a}").render(values::get));
+    }
+
+    @Test
+    public void testConstant() {
+        String text = "no references here";
+        Template template = Template.parse(text);
+        assertTrue(template.names().isEmpty());
+        assertSame(text, template.render(name -> fail("nothing to resolve")));
+        assertFalse(Template.hasReferences(text));
+        assertTrue(Template.hasReferences("a ${b}"));
+    }
+
+    @Test
+    public void testEscape() {
+        assertEquals("${a} 1", Template.parse("$${a} ${a}").render(name -> "1"));
+        assertEquals("$a $", Template.parse("$a $").render(name -> "1"));
+    }
+
+    @Test
+    public void testErrors() {
+        assertThrows(IllegalArgumentException.class, () -> Template.parse("${a"));
+        assertThrows(IllegalArgumentException.class, () -> Template.parse("${ }"));
+    }
+
+    @Test
+    public void testEquality() {
+        assertEquals(Template.parse("x ${a} $${b}"), Template.parse("x ${ a } $${b}"));
+        assertNotEquals(Template.parse("x ${a}"), Template.parse("x ${b}"));
+        assertEquals("x ${a} $${b}", Template.parse("x ${ a } $${b}").toString());
+    }
+}
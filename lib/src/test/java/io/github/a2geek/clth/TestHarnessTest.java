@@ -17,8 +17,22 @@
  */
 package io.github.a2geek.clth;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
 public class TestHarnessTest {
     @Test
     public void testDiff1() {
@@ -61,4 +75,371 @@ public class TestHarnessTest {
         TestHarness.diff(expected, actual);
     }
 
+    @Test
+    public void testDiff_contextWindow() {
+        final var expected = lines(1, 100);
+        final var actual = expected.replace("line 50\n", "line fifty\n");
+        final var diff = TestHarness.diff(expected, actual);
+        assertTrue(diff.startsWith("... (line 45)"), diff);
+        assertTrue(diff.contains("line fifty"), diff);
+        assertFalse(diff.contains("line 44 "), diff);
+        assertFalse(diff.contains("line 56 "), diff);
+        assertTrue(diff.endsWith("...\n"), diff);
+    }
+
+    @Test
+    public void testDiff_rowAndWidthLimits() {
+        final var expected = lines(1, 50);
+        final var actual = lines(1001, 1050) + "x".repeat(500) + "\n";
+        final var limits = new Diff.Limits(2, 10, 20, 10_000, 5);
+        final var diff = Diff.render(expected, actual, limits);
+        assertTrue(diff.contains("more rows not shown"), diff);
+        assertTrue(diff.lines().allMatch(line -> line.length() < 60), diff);
+    }
+
+    @Test
+    public void testDiff_summaryAboveThreshold() {
+        final var expected = lines(1, 500_000);
+        final var actual = expected.replace("line 250000\n", "changed\n").replace("line 499999\n", "");
+        final var diff = Diff.render(expected, actual, new Diff.Limits(3, 100, 80, 1_000, 3));
+        assertTrue(diff.startsWith("Output too large to diff: expected 500000 lines, actual 499999 lines; " +
+                "first difference at line 250000"), diff);
+        assertEquals(4, diff.lines().count());
+    }
+
+    @Test
+    public void testPipeline() throws JsonProcessingException {
+        final var yaml = """
+                commands:
+                  echo:
+                    executable: echo
+                  upper:
+                    executable: upper
+                tests:
+                  - name: pipe
+                    steps:
+                      - pipe:
+                          - command: echo hello world
+                          - command: upper
+                            stderr: "2 words"
+                        stdout: HELLO WORLD
+                      - pipe:
+                          - command: echo hello
+                          - command: upper
+                            rc: 1
+                """;
+        // Fake runner: 'echo' prints its parameters, 'upper' upper-cases stdin and counts words on stderr
+        TestHarness.TestRunner runner = (command, parameters, stdin, stdout, stderr) -> {
+            if (command.executable().equals("echo")) {
+                return ECHO.execute(command, parameters, stdin, stdout, stderr);
+            }
+            try {
+                String text = new String(stdin.readAllBytes());
+                new PrintStream(stdout, true).print(text.toUpperCase(Locale.ROOT));
+                new PrintStream(stderr, true).printf("%d words", text.split(" ").length);
+                return 0;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        SuiteResult result = run(yaml, runner).getFirst();
+
+        assertEquals(2, result.steps().size());
+        assertTrue(result.steps().get(0).passed(), result.steps().get(0).errors().toString());
+        assertEquals("echo hello world | upper", result.steps().get(0).command());
+        assertEquals(List.of("Stage 2 expecting exit code of 1 but got 0"), result.steps().get(1).errors());
+    }
+
+    @Test
+    public void testPipeline_invalid() throws JsonProcessingException {
+        final var yaml = """
+                commands:
+                  echo:
+                    executable: echo
+                tests:
+                  - name: step stderr
+                    steps:
+                      - pipe:
+                          - command: echo a
+                          - command: echo b
+                        stderr: ""
+                  - name: step rc
+                    steps:
+                      - pipe:
+                          - command: echo a
+                        rc: 1
+                  - name: stage stdout
+                    steps:
+                      - pipe:
+                          - command: echo a
+                            stdout: a
+                            stdin: text
+                          - command: echo b
+                  - name: nested pipe
+                    steps:
+                      - pipe:
+                          - command: echo a
+                            pipe:
+                              - command: echo b
+                  - name: no command
+                    steps:
+                      - pipe:
+                          - stderr: ""
+                """;
+        assertEquals(List.of(
+                "[java.lang.RuntimeException: A 'pipe' step sets 'stderr' on each stage instead]",
+                "[java.lang.RuntimeException: A 'pipe' step sets 'rc' on each stage instead]",
+                "[java.lang.RuntimeException: A pipe stage cannot set 'stdin', 'stdout'; set it on the 'pipe' step]",
+                "[java.lang.RuntimeException: A pipe stage cannot have its own 'pipe']",
+                "[java.lang.RuntimeException: Every step (and pipe stage) needs a 'command']"),
+                run(yaml, ECHO).stream().map(TestHarnessTest::errors).toList());
+    }
+
+    @Test
+    public void testConcurrency() throws JsonProcessingException {
+        final var yaml = """
+                commands:
+                  echo:
+                    executable: echo
+                tests:
+                  - name: load
+                    steps:
+                      - command: echo hello
+                        concurrency: 4
+                        stdout: hello
+                """;
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        AtomicInteger calls = new AtomicInteger();
+        // Fake runner: the last instance to start fails
+        TestHarness.TestRunner runner = (command, parameters, stdin, stdout, stderr) -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            running.decrementAndGet();
+            ECHO.execute(command, parameters, stdin, stdout, stderr);
+            return calls.incrementAndGet() == 4 ? 1 : 0;
+        };
+        SuiteResult result = run(yaml, runner).getFirst();
+
+        assertEquals(4, peak.get());
+        SuiteResult.StepResult step = result.steps().getFirst();
+        assertEquals(4, step.load().instances());
+        assertEquals(Integer.valueOf(1), step.returnCode());
+        assertEquals(1, step.errors().size(), step.errors().toString());
+        assertTrue(step.errors().getFirst().endsWith("Expecting exit code of 0 but got 1"), step.errors().toString());
+    }
+
+    @Test
+    public void testConcurrency_invalid() throws JsonProcessingException {
+        final var yaml = """
+                commands:
+                  echo:
+                    executable: echo
+                tests:
+                  - name: profiled
+                    steps:
+                      - command: echo hello
+                        concurrency: 2
+                        profile-dump: samples.csv
+                """;
+        assertEquals(List.of("[java.lang.RuntimeException: 'profile-dump' cannot be used with 'concurrency']"),
+                run(yaml, ECHO).stream().map(TestHarnessTest::errors).toList());
+    }
+
+    @Test
+    public void testExpectLines_returnCode() throws JsonProcessingException {
+        final var yaml = """
+                commands:
+                  cli:
+                    executable: cli
+                tests:
+                  - name: exits by itself
+                    steps:
+                      - command: cli
+                        expect-lines: [ ready ]
+                  - name: stopped
+                    steps:
+                      - command: cli --stoppable
+                        expect-lines: [ ready ]
+                  - name: with stdout
+                    steps:
+                      - command: cli
+                        expect-lines: [ ready ]
+                        stdout: "ready\\n"
+                """;
+        // Fake runner: prints the line and exits with 3, unless it is '--stoppable' and acts on the stop request
+        TestHarness.TestRunner runner = (command, parameters, stdin, stdout, stderr) -> {
+            try {
+                stdout.write("ready\n".getBytes());
+            } catch (StopProcessException e) {
+                if (parameters.contains("--stoppable")) {
+                    e.processStopped();
+                    return 143;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return 3;
+        };
+        assertEquals(List.of(
+                "[Expecting exit code of 0 but got 3]",
+                "[]",
+                "[java.lang.RuntimeException: 'expect-lines' cannot be combined with 'stdout' or 'stdout-fragments']"),
+                run(yaml, runner).stream().map(TestHarnessTest::errors).toList());
+    }
+
+    private static String lines(int from, int to) {
+        return IntStream.rangeClosed(from, to).mapToObj(n -> "line " + n + "\n").collect(Collectors.joining());
+    }
+
+    @Test
+    public void testSpilledOutputIsReportedInPart() throws IOException {
+        final var yaml = """
+                tests:
+                  - name: spilled
+                    steps:
+                      - command: cli
+                        criteria:
+                          match: contains
+                """;
+        Config.Step step = Config.load(yaml).tests().getFirst().steps().getFirst();
+        var out = new java.io.ByteArrayOutputStream();
+        var settings = TestHarness.settings().captureMemoryLimit(16).enableAlwaysShowOutput()
+                .out(new PrintStream(out, true)).get();
+        try (CaptureBuffer actual = new CaptureBuffer(16, CaptureBuffer.UNLIMITED)) {
+            actual.write(("head of output\n" + "x".repeat(10_000) + "\nneedle\n").getBytes());
+            List<String> errors = new java.util.ArrayList<>();
+            assertNull(TestHarness.handleOutput("stdout", step, settings, "needle".getBytes(), actual, errors));
+            assertTrue(errors.isEmpty(), errors.toString());
+            assertTrue(out.toString().contains("more bytes not shown"), out.toString());
+            assertFalse(out.toString().contains("needle"), out.toString());
+
+            String diff = TestHarness.handleOutput("stdout", step, settings, "missing".getBytes(), actual, errors);
+            assertEquals(List.of("'stdout' does not match"), errors);
+            assertTrue(diff.length() < 1000, diff);
+        }
+    }
+
+    @Test
+    public void testInterpolatedExpectations() throws JsonProcessingException {
+        final var yaml = """
+                commands:
+                  echo:
+                    executable: echo
+                tests:
+                  - name: templates
+                    variables:
+                      who: [ World, Moon ]
+                    steps:
+                      - command: echo Hello ${who}
+                        stdout-fragments:
+                          required: [ "Hello ${who}" ]
+                          forbidden: [ "$${who}" ]
+                      - command: echo Hello ${who}
+                        expect-lines: [ "^Hello ${who}$" ]
+                        reject-lines: [ "Goodbye ${who}" ]
+                """;
+        for (SuiteResult result : run(yaml, ECHO)) {
+            assertTrue(result.passed(), errors(result));
+        }
+    }
+
+    @Test
+    public void testInterpolatedExpectations_undefined() throws JsonProcessingException {
+        final var yaml = """
+                commands:
+                  echo:
+                    executable: echo
+                tests:
+                  - name: undefined
+                    steps:
+                      - command: echo Hello
+                        stdout: "Hello ${who}"
+                """;
+        assertEquals("[java.lang.RuntimeException: Found variable named 'who' but no value]", errors(run(yaml, ECHO).getFirst()));
+    }
+
+    @Test
+    public void testStdinUsesCriteriaCharset() throws JsonProcessingException {
+        final var yaml = """
+                commands:
+                  cat:
+                    executable: cat
+                tests:
+                  - name: latin-1
+                    steps:
+                      - command: cat
+                        stdin: "caf\\u00e9"
+                        stdout: "caf\\u00e9"
+                        criteria:
+                          charset: ISO-8859-1
+                """;
+        AtomicInteger length = new AtomicInteger();
+        TestHarness.TestRunner runner = (command, parameters, stdin, stdout, stderr) -> {
+            try {
+                byte[] input = stdin.readAllBytes();
+                length.set(input.length);
+                stdout.write(input);
+                return 0;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        SuiteResult result = run(yaml, runner).getFirst();
+        assertTrue(result.passed(), errors(result));
+        assertEquals(4, length.get());
+    }
+
+    @Test
+    public void testFilesDeletedWhenSuiteFinishes() throws JsonProcessingException {
+        final String yaml = """
+                commands:
+                  echo:
+                    executable: echo
+                files:
+                  data:
+                    type: text
+                    content: hello
+                tests:
+                  - name: files
+                    steps:
+                      - command: echo $data
+                      - command: echo $data
+                        rc: 1
+                """;
+        List<File> seen = new ArrayList<>();
+        List<SuiteResult> results = run(yaml, (command, parameters, stdin, stdout, stderr) -> {
+            File file = new File(parameters.getFirst());
+            assertTrue(file.exists());
+            seen.add(file);
+            return 0;
+        });
+        // Also when the suite fails part way through
+        assertFalse(results.getFirst().passed());
+        assertEquals(2, seen.size());
+        assertFalse(seen.getFirst().exists());
+    }
+
+    // Fake runner: prints its parameters to stdout
+    static final TestHarness.TestRunner ECHO = (command, parameters, stdin, stdout, stderr) -> {
+        new PrintStream(stdout, true).print(String.join(" ", parameters));
+        return 0;
+    };
+
+    // Runs every suite in the YAML against a fake runner, discarding the harness output
+    static List<SuiteResult> run(String yaml, TestHarness.TestRunner runner) throws JsonProcessingException {
+        TestHarness.Settings settings = TestHarness.settings()
+                .out(new PrintStream(PrintStream.nullOutputStream()))
+                .get();
+        return TestSuite.build(Config.load(yaml)).map(testSuite -> TestHarness.execute(testSuite, runner, settings))
+                .toList();
+    }
+
+    private static String errors(SuiteResult result) {
+        return result.steps().getLast().errors().toString();
+    }
 }
@@ -0,0 +1,157 @@
+/*
+ * Command Line Test Harness
+ * Copyright (C) 2025  Robert Greene
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.github.a2geek.clth;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestPlanTest {
+    private static final String yaml =
+                """
+                commands:
+                  cli:
+                    executable: build/cli*
+                    env: { LANG: C }
+                    limits: { cpu-seconds: 5 }
+                  embedded:
+                    main-class: io.github.a2geek.Cli
+                    system-exit: true
+                files:
+                  input:
+                    type: binary
+                    content: 20 fc 58
+                  rows:
+                    type: lines
+                    content: "row {n}"
+                    count: 10
+                tests:
+                  - name: matrix
+                    variables:
+                      word: [ one, two, three ]
+                      file: $input
+                    steps:
+                      - command: cli show $word $file
+                        stdout: "^$word.*"
+                        criteria:
+                          match: regex
+                          charset: ISO-8859-1
+                        stdout-fragments:
+                          required: [ a ]
+                        expect-lines: [ ready ]
+                        max-output: 1MB
+                        stdin-script:
+                          - wait-for: "> "
+                            send: "quit\\n"
+                      - pipe:
+                          - command: cli export
+                          - command: embedded count
+                            rc: 1
+                        stdout: "3"
+                        concurrency: 2
+                  - name: plain
+                    steps:
+                      - command: [ embedded, "--help" ]
+                        stderr: ""
+                """;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Config config = Config.load(yaml);
+        Config other = Config.load("tests:\n  - name: other\n    steps:\n      - command: cli\n");
+        Path plan = tempDir.resolve("plan.bin");
+        TestPlan.write(List.of(config, other), plan);
+
+        List<TestSuite> expected = new ArrayList<>(TestSuite.build(config).toList());
+        expected.addAll(TestSuite.build(other).toList());
+        List<TestSuite> actual = TestPlan.read(plan);
+        assertEquals(expected, actual);
+
+        // Iterations share their steps and strings rather than holding copies
+        assertSame(actual.get(0).steps(), actual.get(2).steps());
+        assertSame(actual.get(0).testName(), actual.get(1).testName());
+        assertSame(actual.get(0).commands(), actual.get(3).commands());
+    }
+
+    @Test
+    public void testIsPlan() throws IOException {
+        Path plan = tempDir.resolve("plan.bin");
+        TestPlan.write(List.of(Config.load(yaml)), plan);
+        Path yamlFile = tempDir.resolve("tests.yml");
+        Files.writeString(yamlFile, yaml);
+
+        assertTrue(TestPlan.isPlan(plan));
+        assertFalse(TestPlan.isPlan(yamlFile));
+        assertFalse(TestPlan.isPlan(tempDir.resolve("missing")));
+        assertThrows(IOException.class, () -> TestPlan.read(yamlFile));
+    }
+
+    @Test
+    public void testVersionMismatch() throws IOException {
+        Path plan = tempDir.resolve("plan.bin");
+        TestPlan.write(List.of(Config.load(yaml)), plan);
+        byte[] bytes = Files.readAllBytes(plan);
+        bytes[7]++;
+        Files.write(plan, bytes);
+        IOException ex = assertThrows(IOException.class, () -> TestPlan.read(plan));
+        assertTrue(ex.getMessage().contains("compile it again"), ex.getMessage());
+    }
+
+    @Test
+    public void testInvalidPattern() throws IOException {
+        Config config = Config.load("tests:\n  - name: bad\n    steps:\n      - command: cli\n" +
+                "        reject-lines: [ \"(unclosed\" ]\n");
+        RuntimeException ex = assertThrows(RuntimeException.class,
+                () -> TestPlan.write(List.of(config), tempDir.resolve("plan.bin")));
+        assertTrue(ex.getMessage().startsWith("Test 'bad' has an invalid pattern"), ex.getMessage());
+    }
+
+    @Test
+    public void testTemplatePattern() throws IOException {
+        final String templates = """
+                tests:
+                  - name: templated
+                    variables:
+                      name: [ alpha, beta ]
+                    steps:
+                      - command: cli create ${name}
+                        stdout: "Created ${name}.*"
+                        criteria:
+                          match: regex
+                        reject-lines: [ "${name} failed{2,}" ]
+                """;
+        Config config = Config.load(templates);
+        Path plan = tempDir.resolve("templates.plan");
+        TestPlan.write(List.of(config), plan);
+        List<TestSuite> fromPlan = TestPlan.read(plan);
+        assertEquals(TestSuite.build(config).toList(), fromPlan);
+        assertEquals("Created beta.*", fromPlan.get(1).interpolate(fromPlan.get(1).steps().getFirst().stdout(),
+                new HashMap<>()));
+    }
+}
@@ -25,7 +25,9 @@ import static org.junit.jupiter.api.Assertions.*;
 import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class TestSuiteTest {
     private static final String yaml =
@@ -58,6 +60,29 @@ public class TestSuiteTest {
         assertTrue(testSuite.evaluateAsArgument("$afile", testCaseFiles).matches("^.*atest.*.txt$"));
     }
 
+    @Test
+    public void testDependencies() throws JsonProcessingException {
+        final String pipes = """
+                tests:
+                  - name: deps
+                    steps:
+                      - command: cli one
+                        stdin: file:input.txt
+                        stdout: file:expected.txt
+                      - pipe:
+                          - command: cli two
+                          - command: filter
+                            stderr: file:errors.txt
+                        stdin-script:
+                          - send: file:chunk.txt
+                          - send: plain text
+                """;
+        TestSuite deps = TestSuite.build(Config.load(pipes)).findFirst().orElseThrow();
+        assertEquals(Set.of("cli", "filter"), deps.commandNames());
+        assertEquals(List.of("input.txt", "expected.txt", "errors.txt", "chunk.txt"),
+                List.copyOf(deps.fileReferences()));
+    }
+
     @Test
     public void testEvaluateAsBytes() throws IOException {
         final TestHarness.Settings settings = TestHarness.settings().get();
@@ -65,4 +90,72 @@ public class TestSuiteTest {
         assertArrayEquals("avalue".getBytes(), testSuite.evaluateAsBytes("$avar", settings));
         assertArrayEquals("HELLO WORLD".getBytes(), testSuite.evaluateAsBytes("$afile", settings));
     }
+
+    @Test
+    public void testInterpolation() throws IOException {
+        final String templates = """
+                files:
+                  fname:
+                    type: text
+                    content: HELLO ${who}
+                tests:
+                  - name: templates
+                    variables:
+                      who: WORLD
+                      dir: data
+                      greeting: hello ${who}
+                      path: ${dir}/${who}.txt
+                      loop: ${loop}
+                    steps:
+                      - command: cli
+                        stdout: file:${dir}/expected.txt
+                """;
+        TestSuite suite = TestSuite.build(Config.load(templates)).findFirst().orElseThrow();
+        Map<String, File> testCaseFiles = new HashMap<>();
+        assertEquals("--name=WORLD", suite.evaluateAsArgument("--name=${who}", testCaseFiles));
+        assertEquals("hello WORLD", suite.evaluateAsArgument("$greeting", testCaseFiles));
+        assertEquals("data/WORLD.txt", suite.evaluateAsArgument("${path}", testCaseFiles));
+        assertEquals("${who}", suite.evaluateAsArgument("$${who}", testCaseFiles));
+        assertEquals("--in=" + suite.evaluateAsArgument("$fname", testCaseFiles),
+                suite.evaluateAsArgument("--in=${fname}", testCaseFiles));
+        assertThrows(RuntimeException.class, () -> suite.evaluateAsArgument("${missing}", testCaseFiles));
+        assertThrows(RuntimeException.class, () -> suite.evaluateAsArgument("${loop}", testCaseFiles));
+
+        final TestHarness.Settings settings = TestHarness.settings().get();
+        assertArrayEquals("say hello WORLD".getBytes(), suite.evaluateAsBytes("say ${greeting}", settings));
+        // File content is used as is
+        assertArrayEquals("HELLO ${who}".getBytes(), suite.evaluateAsBytes("$fname", settings));
+        assertEquals(List.of("data/expected.txt"), List.copyOf(suite.fileReferences()));
+        assertTrue(suite.templates().containsKey("${dir}/expected.txt"));
+        assertTrue(suite.templates().containsKey("hello ${who}"));
+    }
+
+    @Test
+    public void testFileReferences_variables() throws JsonProcessingException {
+        final String references = """
+                files:
+                  generated:
+                    type: text
+                    content: data
+                tests:
+                  - name: references
+                    variables:
+                      dir: data
+                      gen: $generated
+                    steps:
+                      - command: cli
+                        stdin: file:${gen}
+                        stdout: file:${dir}/${generated}
+                        stderr: file:${dir}/err.txt
+                  - name: undefined
+                    steps:
+                      - command: cli
+                        stdout: file:${nowhere}/expected.txt
+                """;
+        List<TestSuite> suites = TestSuite.build(Config.load(references)).toList();
+        assertEquals(List.of("${gen}", "${dir}/${generated}", "data/err.txt"),
+                List.copyOf(suites.getFirst().fileReferences()));
+        RuntimeException ex = assertThrows(RuntimeException.class, () -> suites.getLast().fileReferences());
+        assertEquals("Found variable named 'nowhere' but no value", ex.getMessage());
+    }
 }